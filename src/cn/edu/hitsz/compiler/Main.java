@@ -8,7 +8,7 @@ import cn.edu.hitsz.compiler.parser.ProductionCollector;
 import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
 import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
 import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
-import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.parser.table.LRTableCache;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
@@ -24,7 +24,7 @@ public class Main {
         final var symbolTable = new SymbolTable();
         // 词法分析
         final var lexer = new LexicalAnalyzer(symbolTable);
-        lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
+        lexer.loadMappedFile(FilePathConfig.SRC_CODE_PATH);
         lexer.run();
         lexer.dumpTokens(FilePathConfig.TOKEN_PATH);
         final var tokens = lexer.getTokens();
@@ -32,23 +32,46 @@ public class Main {
 
 
         // 读取第三方程序构造的 LR 分析表
-        final var tableLoader = new TableLoader();
-        final var lrTable = tableLoader.load(FilePathConfig.LR1_TABLE_PATH);
+        // 第一次运行时读取 CSV 并写入二进制缓存, 之后直接从缓存加载
+        final var lrTable = LRTableCache.loadOrBuild(FilePathConfig.LR1_TABLE_PATH, FilePathConfig.LR1_TABLE_CACHE_PATH);
+        // 或者每次都读取 CSV
+        // final var tableLoader = new TableLoader();
+        // final var lrTable = tableLoader.load(FilePathConfig.LR1_TABLE_PATH);
 
         // // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表
         // final var tableGenerator = new TableGenerator();
+        // // 默认构造 SLR(1) 分析表, 也可以改为构造 LALR(1) 分析表
+        // tableGenerator.setLALREnabled(true);
         // tableGenerator.run();
         // final var lrTable = tableGenerator.getTable();
         // lrTable.dumpTable("data/out/lrTable.csv");
 
         // 加载 LR 分析驱动程序
         final var parser = new SyntaxAnalyzer(symbolTable);
+        // 也可以通过 ParserOptions 选择其他分析策略, 观察者看到的事件不变; 不冲突的策略可以连续 with 组合
+        // 对于较大的文法, 可以改用压缩存储的分析表
+        // final var parser = ParserOptions.defaults().withCompressedTable().newAnalyzer(symbolTable);
+        // 也可以使用根据分析表生成的专用解析器 (需要 JDK)
+        // final var parser = ParserOptions.defaults().withGeneratedParser().newAnalyzer(symbolTable);
+        // 语句很多时可以按语句分块并行分析
+        // final var parser = ParserOptions.defaults().withParallelism(Runtime.getRuntime().availableProcessors()).newAnalyzer(symbolTable);
+        // 也可以先记录事件, 接受时再由各个 Observer 在线程池中并发地消费
+        // final var parser = ParserOptions.defaults().withObserverThreads(3).newAnalyzer(symbolTable);
+        // 遇到语法错误时继续分析, 一次报告所有错误
+        // final var parser = ParserOptions.defaults().withErrorRecovery().newAnalyzer(symbolTable);
         parser.loadTokens(tokens);
         parser.loadLRTable(lrTable);
 
         // 加入生成规约列表的 Observer
         final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction());
         parser.registerObserver(productionCollector);
+        // 程序很大时可以改为边分析边写出紧凑的二进制规约日志, 分析结束后关闭, 需要时再解码为文本
+        // final var reduceLogWriter = new ReduceLogWriter(FilePathConfig.REDUCE_LOG_PATH, GrammarInfo.getBeginProduction());
+        // parser.registerObserver(reduceLogWriter);
+
+        // 也可以加入构造语法分析树的 Observer, 之后的遍可以在树上多次遍历
+        // final var parseTreeBuilder = new ParseTreeBuilder(new ParseTree(), GrammarInfo.getBeginProduction());
+        // parser.registerObserver(parseTreeBuilder);
 
         // 加入用作语义检查的 Observer
         final var semanticAnalyzer = new SemanticAnalyzer();
@@ -58,11 +81,29 @@ public class Main {
         final var irGenerator = new IRGenerator();
         parser.registerObserver(irGenerator);
 
+        // 对于很长的程序, 也可以逐语句流式编译: 状态栈不再随语句数增长, 每条语句的 IR 生成后立即写出并模拟执行.
+        // 此时不应加入 ProductionCollector 与 ParseTreeBuilder, 它们按设计保留整个程序的结果; 汇编的寄存器分配要看整个程序的 IR, 不能逐语句生成.
+        // 构造 parser 时改用 ParserOptions.defaults().withStatementStreaming().newAnalyzer(symbolTable)
+        // final var irWriter = FileUtils.openLineWriter(FilePathConfig.INTERMEDIATE_CODE_PATH);
+        // final var streamingEmulator = IREmulator.load(List.of());
+        // irGenerator.setStatementSink(statement -> {
+        //     statement.forEach(instruction -> {
+        //         irWriter.println(instruction);
+        //         streamingEmulator.execute(instruction);
+        //     });
+        //     streamingEmulator.discardTemps(statement);
+        // });
+        // parser.run();
+        // irWriter.close();
+        // FileUtils.writeFile(FilePathConfig.EMULATE_RESULT, streamingEmulator.execute().map(Objects::toString).orElse("No return value"));
+
         // 执行语法解析并在解析过程中依次调用各 Observer
         parser.run();
 
         // 各 Observer 输出结果
         productionCollector.dumpToFile(FilePathConfig.PARSER_PATH);
+        // reduceLogWriter.close();
+        // ReduceLogReader.dumpText(FilePathConfig.REDUCE_LOG_PATH, FilePathConfig.PARSER_PATH);
         symbolTable.dumpTable(FilePathConfig.NEW_SYMBOL_TABLE);
         final var instructions = irGenerator.getIR();
         irGenerator.dumpIR(FilePathConfig.INTERMEDIATE_CODE_PATH);
@@ -0,0 +1,219 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 各基准测试共用的计时与输入生成
+ * <br>
+ * 基准测试不是编译器的一部分, 从项目根目录以 {@code java -cp <classes> cn.edu.hitsz.compiler.bench.XxxBench [参数]} 运行
+ * (分析表与语法文件按 FilePathConfig 中的相对路径读取). 每一项先预热若干次, 再取多次运行时间的中位数.
+ * 输出的开头列出 JVM 与硬件信息, 以便比较不同机器上的结果.
+ * <br>
+ * 文法总是从相对路径 {@code data/in/grammar.txt} 读取, 因此测量其他文法时, 在只包含该文法的临时目录中另起一个 JVM 运行, 见 {@link #runWithGrammar}.
+ */
+final class Bench {
+    private Bench() {
+    }
+
+    /**
+     * 输出标题与运行环境
+     *
+     * @param title 基准测试的名称
+     */
+    static void printEnvironment(String title) {
+        System.out.printf("== %s ==%n", title);
+        System.out.printf("java %s (%s), %s/%s, %d cpu(s), max heap %d MB%n",
+            System.getProperty("java.version"), System.getProperty("java.vm.name"),
+            System.getProperty("os.name"), System.getProperty("os.arch"),
+            Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() >> 20);
+    }
+
+    /**
+     * 先执行 warmups 次, 再执行 runs 次并计时
+     *
+     * @return 计时的各次中的中位数, 单位为毫秒
+     */
+    static double medianMillis(int warmups, int runs, Runnable action) {
+        for (int i = 0; i < warmups; i++) {
+            action.run();
+        }
+        final var times = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            final var start = System.nanoTime();
+            action.run();
+            times[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+
+    /**
+     * @return 充分 GC 之后堆上已使用的字节数
+     */
+    static long usedMemory() {
+        final var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * 生成符合 grammar.txt 的源程序: 先声明 statements 个变量, 再为每个变量赋一个带括号与四则运算的表达式, 最后返回其中一个.
+     * 同样的参数总是生成同样的程序
+     *
+     * @param statements 变量个数, 程序共有 2 * statements + 1 条语句
+     * @param prefix     变量名的前缀, 变量名为前缀加上序号
+     * @return 源程序
+     */
+    static String generateProgram(int statements, String prefix) {
+        final var random = new Random(1);
+        final var builder = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            builder.append("int ").append(prefix).append(i).append(";\n");
+        }
+        final var operators = new char[]{'+', '-', '*'};
+        for (int i = 0; i < statements; i++) {
+            builder.append(prefix).append(i).append(" = ( ")
+                .append(prefix).append(random.nextInt(statements)).append(' ')
+                .append(operators[random.nextInt(operators.length)]).append(' ')
+                .append(1 + random.nextInt(99)).append(" ) * ")
+                .append(prefix).append(random.nextInt(statements)).append(" - ").append(i % 7).append(";\n");
+        }
+        builder.append("return ").append(prefix).append("0;\n");
+        return builder.toString();
+    }
+
+    /**
+     * 将生成的源程序写入临时文件, 程序退出时删除
+     *
+     * @return 临时文件的路径
+     */
+    static String writeTempProgram(String source) {
+        try {
+            final var path = Files.createTempFile("bench", ".txt");
+            path.toFile().deleteOnExit();
+            Files.writeString(path, source, StandardCharsets.US_ASCII);
+            return path.toString();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for temporary program", e);
+        }
+    }
+
+    /**
+     * @return 第 index 个参数解析出的整数; 没有该参数时为 defaultValue
+     */
+    static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    /**
+     * @return 文件的字节数
+     */
+    static long fileSize(String path) {
+        try {
+            return Files.size(Path.of(path));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
+    /**
+     * 生成分层的表达式文法: 第 i 层为 {@code Ai -> Ai + Bi | Bi} 与 {@code Bi -> ( A(i+1) ) | id}, 最后一层的括号内只有 id.
+     * 非终结符与产生式的个数都随层数线性增长, 用来模拟机器生成的大型文法. 只使用 coding_map.csv 中已有的终结符
+     *
+     * @param levels 层数
+     * @return 文法文件的内容
+     */
+    static String generateGrammar(int levels) {
+        final var builder = new StringBuilder();
+        builder.append("P -> S_list;\n");
+        builder.append("S_list -> S Semicolon S_list;\n");
+        builder.append("S_list -> S Semicolon;\n");
+        builder.append("S -> id = A0;\n");
+        for (int i = 0; i < levels; i++) {
+            builder.append("A%d -> A%d + B%d;\n".formatted(i, i, i));
+            builder.append("A%d -> B%d;\n".formatted(i, i));
+            builder.append(i + 1 < levels ? "B%d -> ( A%d );\n".formatted(i, i + 1) : "B%d -> ( id );\n".formatted(i));
+            builder.append("B%d -> id;\n".formatted(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 在一个只包含给定文法与当前码点文件的临时目录中, 另起一个 JVM 运行 main 类, 其输出直接写到当前的标准输出.
+     * 新的 JVM 使用与当前相同的类路径与最大堆大小, 运行结束后删除临时目录
+     *
+     * @param grammar 文法文件的内容
+     * @param main    要运行的类
+     * @param args    传给 main 的参数
+     */
+    static void runWithGrammar(String grammar, Class<?> main, String... args) {
+        runWithGrammar(grammar, FilePathConfig.CODING_MAP_PATH, main, args);
+    }
+
+    /**
+     * 同 {@link #runWithGrammar(String, Class, String...)}, 但使用给定的码点文件
+     *
+     * @param grammar       文法文件的内容
+     * @param codingMapPath 复制到临时目录中作为码点文件的文件
+     * @param main          要运行的类
+     * @param args          传给 main 的参数
+     */
+    static void runWithGrammar(String grammar, String codingMapPath, Class<?> main, String... args) {
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("bench");
+            Files.createDirectories(directory.resolve("data/in"));
+            Files.createDirectories(directory.resolve("data/out"));
+            Files.writeString(directory.resolve(FilePathConfig.GRAMMAR_PATH), grammar, StandardCharsets.US_ASCII);
+            Files.copy(Path.of(codingMapPath), directory.resolve(FilePathConfig.CODING_MAP_PATH));
+
+            // 类路径可能是相对于当前目录的, 换到临时目录之前先转为绝对路径
+            final var classPath = new ArrayList<String>();
+            for (final var entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+                classPath.add(new File(entry).getAbsolutePath());
+            }
+            final var command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx%dm".formatted(Runtime.getRuntime().maxMemory() >> 20),
+                "-cp", String.join(File.pathSeparator, classPath),
+                main.getName()));
+            command.addAll(List.of(args));
+            final var process = new ProcessBuilder(command).directory(directory.toFile()).inheritIO().start();
+            if (process.waitFor() != 0) {
+                throw new RuntimeException("%s exited with %d".formatted(main.getSimpleName(), process.exitValue()));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for benchmark directory", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + main.getSimpleName(), e);
+        } finally {
+            if (directory != null) {
+                deleteDirectory(directory);
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (final var paths = Files.walk(directory)) {
+            for (final var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 稠密分析表与压缩分析表的大小与查表吞吐量比较
+ * <br>
+ * 对 LR1_table.csv 以及由 {@link Bench#generateGrammar} 生成的若干层数的文法 (由 TableGenerator 生成分析表),
+ * 分别以 {@link CompiledLRTable#compile} 与 {@link CompiledLRTable#compress} 编译, 输出两者存储 action 与 goto 表所用的字节数与压缩比,
+ * 以及随机查询非错误的 action 与 goto 单元的中位时间 (每秒查询次数). 查询的单元对两种表相同, 并核对两者查得的结果一致.
+ * 状态多时稠密表放不进缓存, 随机查询更能反映这一点; 真实的解析中相邻的查询往往落在相近的状态上, 差别会小一些.
+ * <br>
+ * 参数: [计时次数, 默认 9] [文法层数 ..., 默认 60 250 1000]
+ */
+public class CompressedTableBench {
+    // 每次计时查询的单元数
+    private static final int LOOKUPS = 1 << 22;
+
+    public static void main(String[] args) {
+        TokenKind.loadTokenKinds();
+        if (args.length > 0 && args[0].equals("--generated")) {
+            // 在 runWithGrammar 准备的目录中运行: 为其中的文法生成分析表并测量
+            final var generator = new TableGenerator();
+            generator.run();
+            measure("%s levels".formatted(args[1]), generator.getTable(), Integer.parseInt(args[2]));
+            return;
+        }
+
+        final var runs = Bench.intArg(args, 0, 9);
+        Bench.printEnvironment("dense vs compressed LR table");
+        System.out.printf("  %-16s %6s %6s %11s %11s %6s %17s %17s%n",
+            "table", "states", "cols", "dense", "compressed", "ratio", "action M/s d/c", "goto M/s d/c");
+        measure("LR1_table.csv", new TableLoader().load(FilePathConfig.LR1_TABLE_PATH), runs);
+        final var levels = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[]{"60", "250", "1000"};
+        for (final var level : levels) {
+            Bench.runWithGrammar(Bench.generateGrammar(Integer.parseInt(level)), CompressedTableBench.class,
+                "--generated", level, String.valueOf(runs));
+        }
+    }
+
+    private static void measure(String name, LRTable table, int runs) {
+        final var dense = CompiledLRTable.compile(table);
+        final var compressed = CompiledLRTable.compress(table);
+
+        // 从所有非错误的单元中随机抽取. goto 表极其稀疏, 不能随机抽取单元后再丢弃错误的
+        final var actionCells = new ArrayList<int[]>();
+        final var gotoCells = new ArrayList<int[]>();
+        for (int state = 0; state < dense.stateCount(); state++) {
+            for (int terminal = 0; terminal < dense.terminalCount(); terminal++) {
+                if (dense.action(state, terminal) != CompiledLRTable.ERROR) {
+                    actionCells.add(new int[]{state, terminal});
+                }
+            }
+            for (int nonTerminal = 0; nonTerminal < dense.nonTerminalCount(); nonTerminal++) {
+                if (dense.gotoState(state, nonTerminal) != CompiledLRTable.NO_GOTO) {
+                    gotoCells.add(new int[]{state, nonTerminal});
+                }
+            }
+        }
+        final var random = new Random(1);
+        final var actionStates = new int[LOOKUPS];
+        final var terminals = new int[LOOKUPS];
+        final var gotoStates = new int[LOOKUPS];
+        final var nonTerminals = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            final var action = actionCells.get(random.nextInt(actionCells.size()));
+            actionStates[i] = action[0];
+            terminals[i] = action[1];
+            final var target = gotoCells.get(random.nextInt(gotoCells.size()));
+            gotoStates[i] = target[0];
+            nonTerminals[i] = target[1];
+        }
+
+        final var checksums = new long[4];
+        final var denseAction = Bench.medianMillis(3, runs, () -> checksums[0] = denseActions(dense, actionStates, terminals));
+        final var compressedAction = Bench.medianMillis(3, runs, () -> checksums[1] = compressedActions(compressed, actionStates, terminals));
+        final var denseGoto = Bench.medianMillis(3, runs, () -> checksums[2] = denseGotos(dense, gotoStates, nonTerminals));
+        final var compressedGoto = Bench.medianMillis(3, runs, () -> checksums[3] = compressedGotos(compressed, gotoStates, nonTerminals));
+        if (checksums[0] != checksums[1] || checksums[2] != checksums[3]) {
+            throw new RuntimeException("Dense and compressed tables differ");
+        }
+
+        System.out.printf("  %-16s %6d %6d %9.1fkB %9.1fkB %5.1fx %8.1f /%7.1f %8.1f /%7.1f%n",
+            name, dense.stateCount(), dense.terminalCount() + dense.nonTerminalCount(),
+            dense.cellCount() * 4 / 1e3, compressed.cellCount() * 4 / 1e3, (double) dense.cellCount() / compressed.cellCount(),
+            LOOKUPS / denseAction / 1e3, LOOKUPS / compressedAction / 1e3,
+            LOOKUPS / denseGoto / 1e3, LOOKUPS / compressedGoto / 1e3);
+    }
+
+    // 两种表各用一份相同的循环, 使每个调用点只见到一种表, 先测量的一方不会影响后者的 JIT 结果
+
+    private static long denseActions(CompiledLRTable table, int[] states, int[] terminals) {
+        var sum = 0L;
+        for (int i = 0; i < states.length; i++) {
+            sum += table.action(states[i], terminals[i]);
+        }
+        return sum;
+    }
+
+    private static long compressedActions(CompiledLRTable table, int[] states, int[] terminals) {
+        var sum = 0L;
+        for (int i = 0; i < states.length; i++) {
+            sum += table.action(states[i], terminals[i]);
+        }
+        return sum;
+    }
+
+    private static long denseGotos(CompiledLRTable table, int[] states, int[] nonTerminals) {
+        var sum = 0L;
+        for (int i = 0; i < states.length; i++) {
+            sum += table.gotoState(states[i], nonTerminals[i]);
+        }
+        return sum;
+    }
+
+    private static long compressedGotos(CompiledLRTable table, int[] states, int[] nonTerminals) {
+        var sum = 0L;
+        for (int i = 0; i < states.length; i++) {
+            sum += table.gotoState(states[i], nonTerminals[i]);
+        }
+        return sum;
+    }
+}
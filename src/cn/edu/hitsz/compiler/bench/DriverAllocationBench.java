@@ -0,0 +1,127 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.Symbol;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Stack;
+
+/**
+ * 对象栈驱动程序与 int 数组状态栈驱动程序的解析时间与分配量比较
+ * <br>
+ * "Stack/LinkedList" 是最初的驱动程序循环的原样复制: 词法单元先复制进 LinkedList, 状态栈与符号栈是 {@code java.util.Stack},
+ * 每次移入与规约都构造一个 Symbol. 另外两项是 SyntaxAnalyzer 现在的默认驱动程序, 分别读取 {@code List<Token>} 与 TokenBuffer.
+ * 三者都不注册观察者, 只测驱动程序本身. 对每一项输出中位解析时间, 每秒的词法单元数, 以及一次解析
+ * (包括 loadTokens) 在当前线程上分配的字节数及其平均到每个词法单元的字节数.
+ * <br>
+ * 参数: [变量个数, 默认 200000] [计时次数, 默认 9]
+ */
+public class DriverAllocationBench {
+    public static void main(String[] args) {
+        final var statements = Bench.intArg(args, 0, 200000);
+        final var runs = Bench.intArg(args, 1, 9);
+        TokenKind.loadTokenKinds();
+        Bench.printEnvironment("Stack/LinkedList driver vs int[] state stack");
+        final var path = Bench.writeTempProgram(Bench.generateProgram(statements, "v"));
+        final var lrTable = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+
+        final var listLexer = new LexicalAnalyzer(new SymbolTable());
+        listLexer.loadMappedFile(path);
+        listLexer.run();
+        final var tokens = listLexer.tokens;
+        final var bufferLexer = new LexicalAnalyzer(new SymbolTable());
+        bufferLexer.loadMappedFile(path);
+        bufferLexer.runIntoBuffer();
+        final var buffer = bufferLexer.getTokenBuffer();
+        System.out.printf("program: %d statements, %d tokens%n", 2 * statements + 1, tokens.size());
+
+        final var analyzer = new SyntaxAnalyzer(new SymbolTable());
+        analyzer.loadLRTable(lrTable);
+        report("Stack/LinkedList", tokens.size(), runs, () -> new ObjectStackDriver(lrTable, tokens).run());
+        report("int[] + List", tokens.size(), runs, () -> {
+            analyzer.loadTokens(tokens);
+            analyzer.run();
+        });
+        report("int[] + buffer", tokens.size(), runs, () -> {
+            analyzer.loadTokens(buffer);
+            analyzer.run();
+        });
+    }
+
+    private static void report(String name, int tokenCount, int runs, Runnable parse) {
+        final var millis = Bench.medianMillis(5, runs, parse);
+        final var bytes = allocatedBytes(parse);
+        System.out.printf("  %-16s %8.1f ms  %6.1f M tokens/s  allocated %10d B/parse  %6.2f B/token%n",
+            name, millis, tokenCount / millis / 1e3, bytes, (double) bytes / tokenCount);
+    }
+
+    /**
+     * @return 执行一次 action 时当前线程分配的字节数
+     */
+    private static long allocatedBytes(Runnable action) {
+        final var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final var thread = Thread.currentThread().getId();
+        final var before = threads.getThreadAllocatedBytes(thread);
+        action.run();
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+
+    /**
+     * 最初的 SyntaxAnalyzer 中 loadTokens 与 run 的复制, 去掉了观察者
+     */
+    private static final class ObjectStackDriver {
+        ObjectStackDriver(LRTable lrTable, List<Token> tokens) {
+            this.lrTable = lrTable;
+            for (Token token : tokens) {
+                tokenQueue.offer(token);
+            }
+        }
+
+        void run() {
+            symbolStack.push(new Symbol(Token.eof()));
+            statusStack.push(lrTable.getInit());
+            while (!tokenQueue.isEmpty()) {
+                final var currentToken = tokenQueue.peek();
+                final var currentStatus = statusStack.peek();
+                final var action = lrTable.getAction(currentStatus, currentToken);
+                switch (action.getKind()) {
+                    case Shift -> {
+                        tokenQueue.poll();
+                        symbolStack.push(new Symbol(currentToken));
+                        statusStack.push(action.getStatus());
+                    }
+                    case Reduce -> {
+                        final var production = action.getProduction();
+                        for (int i = 0; i < production.body().size(); i++) {
+                            symbolStack.pop();
+                            statusStack.pop();
+                        }
+                        symbolStack.push(new Symbol(production.head()));
+                        statusStack.push(lrTable.getGoto(statusStack.peek(), production.head()));
+                    }
+                    case Accept -> {
+                        return;
+                    }
+                    case Error -> throw new RuntimeException("Syntax error");
+                }
+            }
+            throw new RuntimeException("Token stream ended before accept");
+        }
+
+        private final LRTable lrTable;
+        private final Queue<Token> tokenQueue = new LinkedList<>();
+        private final Stack<Symbol> symbolStack = new Stack<>();
+        private final Stack<Status> statusStack = new Stack<>();
+    }
+}
@@ -0,0 +1,117 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.ParserOptions;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+/**
+ * 解释分析表的驱动程序与生成的专用解析器的吞吐量比较
+ * <br>
+ * 对同一个生成程序的 TokenBuffer, 分别以默认的驱动程序, 压缩的分析表与生成的解析器 ({@link ParserOptions#withGeneratedParser()})
+ * 进行语法分析, 输出第一次运行的时间 (生成的解析器包括生成源代码, 编译与加载) 与之后的中位时间, 以及每秒的词法单元数.
+ * 每种方式都分别测量不注册观察者, 与注册一个接收所有事件的观察者两种情况; 后者同时核对各方式通知的事件完全相同.
+ * <br>
+ * 三种方式在同一个 JVM 中运行时, 共用的驱动程序代码的 JIT 结果会相互影响; 单核的机器上 JIT 编译还与测量争用 CPU.
+ * 因此可以只指定一种方式, 在各自的 JVM 中多次运行再比较.
+ * <br>
+ * 参数: [变量个数, 默认 200000] [计时次数, 默认 9] [方式: table, compressed 或 generated, 默认全部]
+ */
+public class GeneratedParserBench {
+    public static void main(String[] args) {
+        final var statements = Bench.intArg(args, 0, 200000);
+        final var runs = Bench.intArg(args, 1, 9);
+        final var only = args.length > 2 ? args[2] : null;
+        TokenKind.loadTokenKinds();
+        Bench.printEnvironment("table-driven vs generated parser");
+        final var path = Bench.writeTempProgram(Bench.generateProgram(statements, "v"));
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        lexer.loadMappedFile(path);
+        lexer.runIntoBuffer();
+        final var tokens = lexer.getTokenBuffer();
+        final var lrTable = new TableLoader().load(FilePathConfig.LR1_TABLE_PATH);
+        System.out.printf("program: %d statements, %d tokens%n", 2 * statements + 1, tokens.size());
+
+        var expected = 0L;
+        for (final var observed : new boolean[]{false, true}) {
+            System.out.println(observed ? "one observer receiving every event:" : "no observers:");
+            final var checksums = new long[]{
+                measure("table", only, ParserOptions.defaults(), lrTable, tokens, observed, runs),
+                measure("compressed", only, ParserOptions.defaults().withCompressedTable(), lrTable, tokens, observed, runs),
+                measure("generated", only, ParserOptions.defaults().withGeneratedParser(), lrTable, tokens, observed, runs),
+            };
+            for (final var checksum : checksums) {
+                if (checksum == 0) {
+                    continue;
+                }
+                if (expected != 0 && checksum != expected) {
+                    throw new RuntimeException("Parsers notified different events");
+                }
+                expected = checksum;
+            }
+        }
+        System.out.printf("event checksum %016x%n", expected);
+    }
+
+    /**
+     * @return 观察者最后一次运行得到的事件校验和; 不注册观察者或未选中该方式时为 0
+     */
+    private static long measure(String name, String only, ParserOptions options, LRTable lrTable, TokenBuffer tokens, boolean observed, int runs) {
+        if (only != null && !only.equals(name)) {
+            return 0;
+        }
+        final var analyzer = options.newAnalyzer(new SymbolTable());
+        final var observer = new ChecksumObserver();
+        if (observed) {
+            analyzer.registerObserver(observer);
+        }
+        analyzer.loadLRTable(lrTable);
+        final Runnable parse = () -> {
+            observer.checksum = 0;
+            analyzer.loadTokens(tokens);
+            analyzer.run();
+        };
+
+        final var start = System.nanoTime();
+        parse.run();
+        final var firstMillis = (System.nanoTime() - start) / 1e6;
+        final var millis = Bench.medianMillis(5, runs, parse);
+        System.out.printf("  %-11s first %8.1f ms  median %7.1f ms  %6.1f M tokens/s%n",
+            name, firstMillis, millis, tokens.size() / millis / 1e3);
+        return observer.checksum;
+    }
+
+    /**
+     * 把每个事件的状态, 词法单元类型与产生式编号累积为校验和
+     */
+    private static final class ChecksumObserver implements ActionObserver {
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            checksum = checksum * 31 + currentStatus.index() * 64L + currentToken.getKind().getCode();
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            checksum = checksum * 31 + currentStatus.index() * 64L + production.index() + 1_000_000;
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+            checksum = checksum * 31 + currentStatus.index();
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+
+        private long checksum = 0;
+    }
+}
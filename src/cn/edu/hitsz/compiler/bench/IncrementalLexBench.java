@@ -0,0 +1,74 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.IncrementalLexer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 增量词法分析 ({@link IncrementalLexer#applyEdit(IncrementalLexer.Edit)}) 每次编辑的耗时随程序规模的变化
+ * <br>
+ * 对不同规模的生成程序, 先计时整个程序的词法分析, 再在语句边界处反复插入一条语句并随即删除它 (使程序复原, 语句边界保持有效),
+ * 输出单次编辑耗时的中位数与 99 分位数. 编辑位置分两种: 在光标附近 (光标每次前后移动至多 3 条语句, 与在编辑器中输入相近),
+ * 以及在整个程序中均匀随机 (间隙缓冲区每次都要移动较远的距离).
+ * <br>
+ * 参数: [每种位置的编辑次数, 默认 2000] [变量个数, 可以有多个, 默认 10000 100000 300000]
+ */
+public class IncrementalLexBench {
+    public static void main(String[] args) {
+        final var edits = Bench.intArg(args, 0, 2000);
+        final var sizes = new ArrayList<Integer>();
+        for (int i = 1; i < args.length; i++) {
+            sizes.add(Integer.parseInt(args[i]));
+        }
+        if (sizes.isEmpty()) {
+            sizes.addAll(List.of(10000, 100000, 300000));
+        }
+        TokenKind.loadTokenKinds();
+        Bench.printEnvironment("incremental lexing: time per edit");
+
+        for (final var statements : sizes) {
+            final var source = Bench.generateProgram(statements, "v");
+            final var path = Bench.writeTempProgram(source);
+            final var lexer = new IncrementalLexer(new SymbolTable());
+            lexer.loadFile(path);
+            final var fullMillis = Bench.medianMillis(1, 3, lexer::run);
+            System.out.printf("program: %d statements, %.1f MB, %d tokens, full lexing %.1f ms%n",
+                2 * statements + 1, Bench.fileSize(path) / 1e6, lexer.getTokens().size(), fullMillis);
+
+            // 每行一条语句, 行首即语句边界
+            final var boundaries = source.lines().mapToInt(String::length).toArray();
+            for (int i = 0, offset = 0; i < boundaries.length; i++) {
+                final var length = boundaries[i];
+                boundaries[i] = offset;
+                offset += length + 1;
+            }
+
+            for (final var local : new boolean[]{true, false}) {
+                final var random = new Random(2);
+                final var micros = new double[edits];
+                var line = boundaries.length / 2;
+                for (int i = 0; i < edits; i++) {
+                    line = local
+                        ? Math.max(0, Math.min(boundaries.length - 1, line + random.nextInt(7) - 3))
+                        : random.nextInt(boundaries.length);
+                    final var statement = "v%d = v%d + %d;\n".formatted(random.nextInt(statements), i % statements, i);
+                    final var start = System.nanoTime();
+                    lexer.applyEdit(new IncrementalLexer.Edit(boundaries[line], 0, statement));
+                    lexer.applyEdit(new IncrementalLexer.Edit(boundaries[line], statement.length(), ""));
+                    micros[i] = (System.nanoTime() - start) / 2e3;
+                }
+                Arrays.sort(micros);
+                System.out.printf("  %-13s median %7.1f us, p99 %7.1f us per edit%n",
+                    local ? "near cursor" : "random", micros[edits / 2], micros[edits * 99 / 100]);
+            }
+            if (!lexer.getSource().equals(source)) {
+                throw new RuntimeException("Source differs after undoing all edits");
+            }
+        }
+    }
+}
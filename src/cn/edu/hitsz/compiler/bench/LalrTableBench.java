@@ -0,0 +1,183 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.ActionSubscription;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.File;
+
+/**
+ * SLR(1), LALR(1) 与规范 LR(1) 分析表的大小与解析吞吐量比较
+ * <br>
+ * 对每个文法分别以 TableGenerator 生成 SLR(1) 与 LALR(1) 分析表 ({@link TableGenerator#setLALREnabled}), 有对应的 CSV 时再加载规范 LR(1) 分析表,
+ * 输出各表的状态数, 非错误的 action 单元数, goto 单元数, 稠密存储 ({@link CompiledLRTable#compile}) 所占的字节数,
+ * 生成 (或加载 CSV) 的时间与解析的吞吐量; 生成时出现冲突的表输出冲突信息. 生成时间是 JVM 中的第一次运行, 包括 JIT 的预热. 文法为:
+ * <ul>
+ *     <li>grammar.txt 与 grammar_extra.txt, 与 LR1_table.csv 及 LR1_table_extra.csv 比较, 并以生成的程序测量解析的吞吐量,
+ *     同时核对各表得到的规约序列相同</li>
+ *     <li>{@code S -> L = R | R} 形式的文法: 不是 SLR(1) 的, 但是 LALR(1) 的</li>
+ *     <li>由 {@link Bench#generateGrammar} 生成的 60, 250 与 1000 层的文法</li>
+ * </ul>
+ * 每个文法在各自的临时目录与 JVM 中运行, 见 {@link Bench#runWithGrammar}.
+ * <br>
+ * 参数: [解析的程序的变量个数, 默认 100000] [计时次数, 默认 9]
+ */
+public class LalrTableBench {
+    // SLR(1) 中 L 与 R 的 follow 集合都含有 "=", 在 S -> L . = R 与 R -> L . 所在的状态上产生移入-规约冲突
+    private static final String NOT_SLR_GRAMMAR = """
+        P -> S_list;
+        S_list -> S Semicolon S_list;
+        S_list -> S Semicolon;
+        S -> L = R;
+        S -> R;
+        L -> * R;
+        L -> id;
+        R -> L;
+        """;
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--grammar")) {
+            // 在 runWithGrammar 准备的目录中运行
+            measure(args[1], args[2], Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            return;
+        }
+
+        final var statements = String.valueOf(Bench.intArg(args, 0, 100000));
+        final var runs = String.valueOf(Bench.intArg(args, 1, 9));
+        Bench.printEnvironment("SLR(1) vs LALR(1) vs canonical LR(1)");
+        System.out.printf("  %-18s %-6s %6s %8s %7s %10s %9s %12s%n",
+            "grammar", "table", "states", "actions", "gotos", "dense", "gen ms", "M tokens/s");
+        Bench.runWithGrammar(FileUtils.readFile("data/in/grammar.txt"), "data/in/coding_map.csv", LalrTableBench.class,
+            "--grammar", "grammar.txt", new File("data/in/LR1_table.csv").getAbsolutePath(), statements, runs);
+        Bench.runWithGrammar(FileUtils.readFile("data/in/grammar_extra.txt"), "data/in/coding_map_extra.csv", LalrTableBench.class,
+            "--grammar", "grammar_extra.txt", new File("data/in/LR1_table_extra.csv").getAbsolutePath(), statements, runs);
+        Bench.runWithGrammar(NOT_SLR_GRAMMAR, LalrTableBench.class, "--grammar", "L = R | R", "-", "0", runs);
+        for (final var levels : new int[]{60, 250, 1000}) {
+            Bench.runWithGrammar(Bench.generateGrammar(levels), LalrTableBench.class,
+                "--grammar", "%d levels".formatted(levels), "-", "0", runs);
+        }
+    }
+
+    /**
+     * 测量当前目录中的文法
+     *
+     * @param name       文法的名称
+     * @param lr1Path    规范 LR(1) 分析表的 CSV, 没有时为 "-"
+     * @param statements 解析的程序的变量个数, 为 0 时不测量解析
+     * @param runs       计时次数
+     */
+    private static void measure(String name, String lr1Path, int statements, int runs) {
+        TokenKind.loadTokenKinds();
+        final var kinds = new String[]{"SLR", "LALR", "LR(1)"};
+        final var tables = new LRTable[3];
+        final var generateMillis = new double[3];
+        for (int i = 0; i < 3; i++) {
+            final var start = System.nanoTime();
+            try {
+                if (i < 2) {
+                    final var generator = new TableGenerator();
+                    generator.setLALREnabled(i == 1);
+                    generator.run();
+                    tables[i] = generator.getTable();
+                } else if (!lr1Path.equals("-")) {
+                    tables[i] = new TableLoader().load(lr1Path);
+                }
+            } catch (RuntimeException e) {
+                System.out.printf("  %-18s %-6s %s%n", name, kinds[i], e.getMessage());
+            }
+            generateMillis[i] = (System.nanoTime() - start) / 1e6;
+        }
+
+        final var tokensPerMillis = new double[3];
+        if (statements > 0) {
+            final var path = Bench.writeTempProgram(Bench.generateProgram(statements, "v"));
+            final var lexer = new LexicalAnalyzer(new SymbolTable());
+            lexer.loadMappedFile(path);
+            lexer.run();
+            final var tokens = lexer.tokens;
+            var expected = 0L;
+            for (int i = 0; i < 3; i++) {
+                if (tables[i] == null) {
+                    continue;
+                }
+                final var analyzer = new SyntaxAnalyzer(new SymbolTable());
+                final var observer = new ReduceChecksum();
+                analyzer.registerObserver(observer);
+                analyzer.loadLRTable(tables[i]);
+                final var millis = Bench.medianMillis(3, runs, () -> {
+                    observer.checksum = 0;
+                    analyzer.loadTokens(tokens);
+                    analyzer.run();
+                });
+                if (expected != 0 && observer.checksum != expected) {
+                    throw new RuntimeException("Tables reduce differently");
+                }
+                expected = observer.checksum;
+                tokensPerMillis[i] = tokens.size() / millis;
+            }
+        }
+
+        for (int i = 0; i < 3; i++) {
+            if (tables[i] != null) {
+                report(name, kinds[i], tables[i], generateMillis[i], tokensPerMillis[i]);
+            }
+        }
+    }
+
+    private static void report(String name, String kind, LRTable table, double generateMillis, double tokensPerMillis) {
+        final var compiled = CompiledLRTable.compile(table);
+        var actions = 0;
+        var gotos = 0;
+        for (int state = 0; state < compiled.stateCount(); state++) {
+            for (int terminal = 0; terminal < compiled.terminalCount(); terminal++) {
+                actions += compiled.action(state, terminal) != CompiledLRTable.ERROR ? 1 : 0;
+            }
+            for (int nonTerminal = 0; nonTerminal < compiled.nonTerminalCount(); nonTerminal++) {
+                gotos += compiled.gotoState(state, nonTerminal) != CompiledLRTable.NO_GOTO ? 1 : 0;
+            }
+        }
+        System.out.printf("  %-18s %-6s %6d %8d %7d %8.1fkB %9.1f %12s%n",
+            name, kind, compiled.stateCount(), actions, gotos, compiled.cellCount() * 4 / 1e3, generateMillis,
+            tokensPerMillis > 0 ? "%.1f".formatted(tokensPerMillis / 1e3) : "-");
+    }
+
+    /**
+     * 把规约的产生式编号累积为校验和. 各表的状态编号不同, 只比较规约序列
+     */
+    private static final class ReduceChecksum implements ActionObserver {
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            checksum = checksum * 31 + production.index();
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+
+        @Override
+        public ActionSubscription subscription() {
+            return ActionSubscription.none().withAllReduces();
+        }
+
+        private long checksum = 0;
+    }
+}
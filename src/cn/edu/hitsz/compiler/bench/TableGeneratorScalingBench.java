@@ -0,0 +1,118 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * TableGenerator 并行构造项目集族 ({@link TableGenerator#setParallelism}) 在不同线程数下的墙钟时间
+ * <br>
+ * 对由 {@link Bench#generateGrammar} 生成的若干层数的文法, 分别以 1, 4 与 16 个线程生成分析表, 输出 run() 的中位时间
+ * (包括 first/follow 集合, 项目集族与填表; 只有项目集族的构造是并行的) 及相对于单线程的加速比.
+ * 每个 (文法, 线程数) 在各自的 JVM 中运行, 互不影响 JIT 的结果; 各次运行把分析表 dump 到同一个临时目录中,
+ * 最后核对不同线程数得到的 dumpTable 输出逐字节相同, 即状态编号是确定的.
+ * <br>
+ * 可用的 CPU 少于线程数时不会有加速, 多出的线程只增加调度的开销.
+ * <br>
+ * 参数: [计时次数, 默认 5] [文法层数 ..., 默认 250 1000 2000]
+ */
+public class TableGeneratorScalingBench {
+    private static final int[] THREADS = {1, 4, 16};
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--generated")) {
+            // 在 runWithGrammar 准备的目录中运行
+            measure(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), args[4]);
+            return;
+        }
+
+        final var runs = Bench.intArg(args, 0, 5);
+        final var levels = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[]{"250", "1000", "2000"};
+        Bench.printEnvironment("parallel canonical collection construction");
+        System.out.printf("  %-12s %7s %7s %10s %8s%n", "grammar", "threads", "states", "median ms", "speedup");
+        final Path dumps;
+        try {
+            dumps = Files.createTempDirectory("scaling");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        for (final var level : levels) {
+            final var grammar = Bench.generateGrammar(Integer.parseInt(level));
+            for (final var threads : THREADS) {
+                final var dump = dumps.resolve("%s-%d.csv".formatted(level, threads)).toString();
+                Bench.runWithGrammar(grammar, TableGeneratorScalingBench.class,
+                    "--generated", level, String.valueOf(threads), String.valueOf(runs), dump);
+            }
+            for (final var threads : THREADS) {
+                if (!sameContent(dumps.resolve(level + "-1.csv"), dumps.resolve("%s-%d.csv".formatted(level, threads)))) {
+                    throw new RuntimeException("Table for %s levels differs with %d threads".formatted(level, threads));
+                }
+            }
+            System.out.printf("  %-12s dumpTable identical for %s threads%n",
+                level + " levels", Arrays.toString(THREADS));
+        }
+        delete(dumps);
+    }
+
+    /**
+     * 以给定的线程数测量当前目录中的文法
+     *
+     * @param levels  文法的层数, 只用于输出
+     * @param threads 线程数
+     * @param runs    计时次数
+     * @param dump    dumpTable 输出的路径
+     */
+    private static void measure(int levels, int threads, int runs, String dump) {
+        TokenKind.loadTokenKinds();
+        final var generator = new TableGenerator[1];
+        final var millis = Bench.medianMillis(1, runs, () -> {
+            generator[0] = new TableGenerator();
+            generator[0].setParallelism(threads);
+            generator[0].run();
+        });
+        generator[0].getTable().dumpTable(dump);
+
+        // 单线程的时间由同一文法的第一个子进程记录, 在这里读回以计算加速比
+        final var baseline = Path.of(dump).resolveSibling(levels + "-1.ms");
+        try {
+            if (threads == 1) {
+                Files.writeString(baseline, String.valueOf(millis));
+            }
+            final var speedup = Double.parseDouble(Files.readString(baseline)) / millis;
+            // dumpTable 的前两行是表头, 之后每行一个状态, 末尾有一个空行
+            final long states;
+            try (final var lines = Files.lines(Path.of(dump))) {
+                states = lines.filter(line -> !line.isEmpty()).count() - 2;
+            }
+            System.out.printf("  %-12s %7d %7d %10.1f %7.2fx%n",
+                levels + " levels", threads, states, millis, speedup);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path directory) {
+        try (final var files = Files.list(directory)) {
+            for (final var file : files.toList()) {
+                Files.delete(file);
+            }
+            Files.delete(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean sameContent(Path first, Path second) {
+        try {
+            return Files.mismatch(first, second) == -1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.List;
+
+/**
+ * {@code List<Token>} 与 TokenBuffer 的内存与吞吐量比较
+ * <br>
+ * 对同一个生成程序分别以 run (得到 {@code List<Token>}) 与 runIntoBuffer (得到 TokenBuffer) 进行词法分析, 输出:
+ * 词法分析的中位时间, 结果保留在堆上时占用的内存, 以及按顺序读取所有词法单元的类型与标识符文本 (解析器与观察者的访问方式) 的中位时间.
+ * <br>
+ * 参数: [变量个数, 默认 300000] [计时次数, 默认 9]
+ */
+public class TokenBufferBench {
+    public static void main(String[] args) {
+        final var statements = Bench.intArg(args, 0, 300000);
+        final var runs = Bench.intArg(args, 1, 9);
+        TokenKind.loadTokenKinds();
+        Bench.printEnvironment("List<Token> vs TokenBuffer");
+        final var path = Bench.writeTempProgram(Bench.generateProgram(statements, "v"));
+        System.out.printf("program: %d statements, %.1f MB%n", 2 * statements + 1, Bench.fileSize(path) / 1e6);
+
+        // 词法分析的时间
+        final var listMillis = Bench.medianMillis(3, runs, () -> lexToList(path));
+        final var bufferMillis = Bench.medianMillis(3, runs, () -> lexToBuffer(path));
+
+        // 保留结果时的内存
+        final var baseline = Bench.usedMemory();
+        final var list = lexToList(path);
+        final var listBytes = Bench.usedMemory() - baseline;
+        final var buffer = lexToBuffer(path);
+        final var bufferBytes = Bench.usedMemory() - baseline - listBytes;
+
+        // 按顺序读取
+        final var checksum = new long[2];
+        final var listReadMillis = Bench.medianMillis(3, runs, () -> checksum[0] = readList(list.tokens));
+        final var bufferReadMillis = Bench.medianMillis(3, runs, () -> checksum[1] = readBuffer(buffer));
+        if (checksum[0] != checksum[1]) {
+            throw new RuntimeException("Token streams differ");
+        }
+
+        System.out.printf("  %-12s lex %8.1f ms  retained %7.1f MB  read %7.1f ms  (%d tokens)%n",
+            "List<Token>", listMillis, listBytes / 1e6, listReadMillis, list.tokens.size());
+        System.out.printf("  %-12s lex %8.1f ms  retained %7.1f MB  read %7.1f ms  (%d tokens)%n",
+            "TokenBuffer", bufferMillis, bufferBytes / 1e6, bufferReadMillis, buffer.getTokenBuffer().size());
+    }
+
+    private static LexicalAnalyzer lexToList(String path) {
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        lexer.loadMappedFile(path);
+        lexer.run();
+        return lexer;
+    }
+
+    private static LexicalAnalyzer lexToBuffer(String path) {
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        lexer.loadMappedFile(path);
+        lexer.runIntoBuffer();
+        return lexer;
+    }
+
+    private static long readList(List<Token> tokens) {
+        final var id = TokenKind.fromString("id");
+        var hash = 0L;
+        for (final var token : tokens) {
+            final var kind = token.getKind();
+            hash = hash * 31 + kind.getCode() + (kind == id ? token.getText().length() : 0);
+        }
+        return hash;
+    }
+
+    private static long readBuffer(LexicalAnalyzer lexer) {
+        final var buffer = lexer.getTokenBuffer();
+        var hash = 0L;
+        for (int i = 0; i < buffer.size(); i++) {
+            final var symbolId = buffer.symbolId(i);
+            hash = hash * 31 + buffer.kindCode(i) + (symbolId != TokenBuffer.NO_SYMBOL ? buffer.symbolText(symbolId).length() : 0);
+        }
+        return hash;
+    }
+}
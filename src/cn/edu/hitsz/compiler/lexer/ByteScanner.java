@@ -0,0 +1,145 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 直接在字节缓冲区 (通常是内存映射的源文件) 上工作的扫描器
+ * <br>
+ * TXTv2 源程序只包含 ASCII 字符, 因此扫描器逐字节地识别词法单元, 只记录每个词法单元在缓冲区中的起止偏移,
+ * 仅当词法单元是标识符或整数常量时才由字节构造出 String. 每个字节只被访问常数次, 扫描时间与源文件大小成线性关系.
+ * <br>
+ * 词法单元由根据码点文件生成的 DFA 识别, 每个字节只需一次字符类查表与一次转移表查表.
+ * <br>
+ * 扫描器只负责识别词法单元, 符号表的维护交由调用者完成.
+ *
+ * @see LexerDfa
+ * @see LexicalAnalyzer#loadMappedFile(String)
+ */
+final class ByteScanner {
+    /**
+     * @param source 源程序所在的缓冲区
+     * @param begin  扫描的起始偏移 (包含)
+     * @param end    扫描的结束偏移 (不包含)
+     */
+    ByteScanner(ByteBuffer source, int begin, int end) {
+        this.source = source;
+        this.position = begin;
+        this.end = end;
+        this.dfa = LexerDfa.getInstance();
+        this.identifierKind = TokenKind.fromString("id");
+        this.intConstKind = TokenKind.fromString("IntConst");
+    }
+
+    /**
+     * 扫描下一个词法单元, 扫描成功后可通过 {@code kind}, {@code tokenStart}, {@code tokenEnd} 获取其信息
+     * <br>
+     * 按最长匹配原则运行 DFA: 一直转移到没有转移为止, 然后回退到最后一次经过接受状态的位置
+     *
+     * @return 是否扫描到了新的词法单元; 到达扫描范围末尾时返回 false
+     * @throws RuntimeException 遇到了无法识别的字符
+     */
+    boolean advance() {
+        while (position < end && dfa.classOf(source.get(position)) == LexerDfa.CLASS_WHITESPACE) {
+            position++;
+        }
+        if (position >= end) {
+            return false;
+        }
+
+        tokenStart = position;
+        var state = dfa.start();
+        TokenKind lastAccepted = null;
+        var lastAcceptedEnd = position;
+        while (position < end) {
+            state = dfa.next(state, dfa.classOf(source.get(position)));
+            if (state == LexerDfa.NO_TRANSITION) {
+                break;
+            }
+            position++;
+            if (dfa.accepting(state) != null) {
+                lastAccepted = dfa.accepting(state);
+                lastAcceptedEnd = position;
+            }
+        }
+
+        if (lastAccepted == null) {
+            final var c = source.get(tokenStart);
+            throw new RuntimeException("Unexpected character '%c' at offset %d".formatted((char) (c & 0xFF), tokenStart));
+        }
+
+        position = lastAcceptedEnd;
+        tokenEnd = position;
+        kind = lastAccepted;
+        if (kind == identifierKind) {
+            // 关键字先按标识符识别, 再直接在字节区间上查关键字的完美哈希表, 不构造 String
+            final var keyword = dfa.keywords().lookup(source, tokenStart, tokenEnd);
+            if (keyword != null) {
+                kind = keyword;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 当前词法单元的类型
+     */
+    TokenKind kind() {
+        return kind;
+    }
+
+    /**
+     * @return 当前词法单元在缓冲区中的起始偏移 (包含)
+     */
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * @return 当前词法单元在缓冲区中的结束偏移 (不包含)
+     */
+    int tokenEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * @return 当前词法单元是否为标识符
+     */
+    boolean isIdentifier() {
+        return kind == identifierKind;
+    }
+
+    /**
+     * @return 当前词法单元的源文本, 每次调用都会构造新的 String
+     */
+    String text() {
+        final var bytes = new byte[tokenEnd - tokenStart];
+        source.get(tokenStart, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 将当前词法单元转换为 Token, 只有标识符与整数常量会携带文本
+     *
+     * @return 当前词法单元对应的 Token
+     */
+    Token toToken() {
+        if (kind == identifierKind || kind == intConstKind) {
+            return Token.normal(kind, text());
+        } else {
+            return Token.simple(kind);
+        }
+    }
+
+    private final ByteBuffer source;
+    private final int end;
+    private int position;
+
+    private final LexerDfa dfa;
+    private final TokenKind identifierKind;
+    private final TokenKind intConstKind;
+
+    private TokenKind kind = null;
+    private int tokenStart = 0;
+    private int tokenEnd = 0;
+}
@@ -0,0 +1,380 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * 增量词法分析器
+ * <br>
+ * 与 LexicalAnalyzer 不同, 该类在分析后保留源程序以及每个词法单元在源程序中的起始偏移. 源程序被编辑后,
+ * 只需从编辑位置之前最近的语句边界 (分号之后) 开始重新分析, 直到新产生的词法单元与原有的词法单元重新对齐为止:
+ * 从某个位置开始的词法分析结果只取决于该位置之后的文本, 因此只要新的词法单元起始于编辑区域之后,
+ * 且原有的词法单元序列中在对应位置也有一个词法单元起始, 之后的词法单元就必然与原来相同.
+ * <br>
+ * 为使每次编辑的开销只与编辑附近的文本有关, 源程序与词法单元序列都存放在间隙缓冲区中: 编辑时把间隙移到编辑的位置,
+ * 只移动两次编辑之间的那部分内容, 删除与插入都在间隙处原地完成. 间隙之后的词法单元记录的是相对于源程序末尾的偏移,
+ * 在它们之前的编辑不会改变这一偏移, 因此无需平移. 重新分析时源程序的间隙停在开始分析的位置, 其后的文本是连续的.
+ * <br>
+ * 该类同时维护每个标识符在词法单元序列中的出现次数, 使符号表在标识符被加入或完全删除时保持一致.
+ * 符号表中由该类删除的标识符只由它的出现次数决定, 因此该符号表不应同时由其他词法分析器使用.
+ *
+ * @see ByteScanner
+ */
+public class IncrementalLexer {
+    /**
+     * 对源程序的一次编辑
+     *
+     * @param offset        编辑的起始偏移
+     * @param removedLength 被删除的字节数
+     * @param insertedText  插入的文本, 须为 ASCII 编码
+     */
+    public record Edit(int offset, int removedLength, String insertedText) {
+    }
+
+    /**
+     * 一次编辑引起的词法单元序列的变化: 原序列中从 firstIndex 开始的 removedCount 个词法单元被替换为 insertedTokens
+     *
+     * @param firstIndex     第一个发生变化的词法单元的下标
+     * @param removedCount   被替换掉的原词法单元个数
+     * @param insertedTokens 新的词法单元
+     */
+    public record TokenDelta(int firstIndex, int removedCount, List<Token> insertedTokens) {
+    }
+
+    public IncrementalLexer(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        this.identifierKind = TokenKind.fromString("id");
+    }
+
+    /**
+     * 从给予的路径中读取并加载文件内容
+     *
+     * @param path 路径
+     */
+    public void loadFile(String path) {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(Paths.get(path));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+        text = Arrays.copyOf(bytes, bytes.length + MIN_GAP);
+        gapStart = bytes.length;
+        gapEnd = text.length;
+    }
+
+    /**
+     * 对整个源程序执行词法分析
+     */
+    public void run() {
+        for (int i = 0; i < tokenCount(); i++) {
+            tokens[physicalIndex(i)] = null;
+        }
+        tokenGapStart = 0;
+        tokenGapEnd = tokens.length;
+        identifierCounts.clear();
+        moveSourceGap(0);
+        final var count = relex(-1);
+        for (int i = 0; i < count; i++) {
+            if (isIdentifier(newTokens[i])) {
+                identifierCounts.merge(newTokens[i].getText(), 1, Integer::sum);
+                symbolTable.getOrAdd(newTokens[i].getText());
+            }
+        }
+        insertTokens(count);
+        lexed = true;
+    }
+
+    /**
+     * @return 当前的 Token 列表, 以 EOF 结尾. 返回的是只读的视图, 随编辑而变化
+     */
+    public List<Token> getTokens() {
+        return tokenView;
+    }
+
+    /**
+     * @return 当前的源程序
+     */
+    public String getSource() {
+        final var builder = new StringBuilder(sourceLength());
+        builder.append(new String(text, 0, gapStart, StandardCharsets.US_ASCII));
+        builder.append(new String(text, gapEnd, text.length - gapEnd, StandardCharsets.US_ASCII));
+        return builder.toString();
+    }
+
+    /**
+     * 对源程序应用一次编辑, 只重新分析受影响的部分
+     *
+     * @param edit 编辑
+     * @return 词法单元序列的变化
+     */
+    public TokenDelta applyEdit(Edit edit) {
+        if (!lexed) {
+            throw new RuntimeException("applyEdit called before run");
+        }
+        final var offset = edit.offset();
+        final var removedEnd = offset + edit.removedLength();
+        if (offset < 0 || edit.removedLength() < 0 || removedEnd > sourceLength()) {
+            throw new RuntimeException("Edit out of range: " + edit);
+        }
+
+        // 编辑位置之前的文本没有改变, 从其之前最近的分号之后开始重新分析
+        var restart = offset;
+        while (restart > 0 && byteAt(restart - 1) != ';') {
+            restart--;
+        }
+        final var firstIndex = lowerBound(restart);
+        // 之后的词法单元都移到间隙之后, 以相对于末尾的偏移记录
+        moveTokenGap(firstIndex);
+
+        // 在间隙处删除与插入, 再把间隙移回开始分析的位置
+        final var inserted = edit.insertedText().getBytes(StandardCharsets.US_ASCII);
+        moveSourceGap(offset);
+        gapEnd += edit.removedLength();
+        ensureSourceGap(inserted.length);
+        System.arraycopy(inserted, 0, text, gapStart, inserted.length);
+        gapStart += inserted.length;
+        moveSourceGap(restart);
+
+        final var insertedCount = relex(offset + inserted.length);
+        final var removedCount = resyncIndex - firstIndex;
+
+        // 先增加新标识符的引用计数, 再减少被删除的标识符的, 避免同一标识符被先删除再加入符号表
+        for (int i = 0; i < insertedCount; i++) {
+            if (isIdentifier(newTokens[i])) {
+                identifierCounts.merge(newTokens[i].getText(), 1, Integer::sum);
+                symbolTable.getOrAdd(newTokens[i].getText());
+            }
+        }
+        for (int i = tokenGapEnd; i < tokenGapEnd + removedCount; i++) {
+            final var token = tokens[i];
+            if (isIdentifier(token) && identifierCounts.merge(token.getText(), -1, Integer::sum) == 0) {
+                identifierCounts.remove(token.getText());
+                symbolTable.remove(token.getText());
+            }
+            tokens[i] = null;
+        }
+
+        // 被替换的词法单元紧接在间隙之后, 并入间隙; 新的词法单元放在间隙的开头
+        tokenGapEnd += removedCount;
+        final var insertedTokens = List.of(Arrays.copyOf(newTokens, insertedCount));
+        insertTokens(insertedCount);
+        return new TokenDelta(firstIndex, removedCount, insertedTokens);
+    }
+
+    //==================== 以下为重新分析 ==============================//
+
+    /**
+     * 从源程序间隙所在的位置开始词法分析, 直到与间隙之后的原词法单元重新对齐. 结果存入 newTokens 与 newStarts,
+     * 对齐的原词法单元的下标存入 resyncIndex, 未能对齐时为原词法单元的个数
+     *
+     * @param editedEnd 被编辑区域的结束位置, 在此之后才尝试重新对齐; 为负时不对齐
+     * @return 新词法单元的个数
+     */
+    private int relex(int editedEnd) {
+        final var gap = gapEnd - gapStart;
+        final var length = sourceLength();
+        final var scanner = new ByteScanner(ByteBuffer.wrap(text), gapEnd, text.length);
+        var count = 0;
+        while (scanner.advance()) {
+            final var start = scanner.tokenStart() - gap;
+            if (editedEnd >= 0 && start >= editedEnd) {
+                final var aligned = Arrays.binarySearch(starts, tokenGapEnd, tokens.length, start - length);
+                if (aligned >= 0) {
+                    resyncIndex = tokenGapStart + aligned - tokenGapEnd;
+                    return count;
+                }
+            }
+
+            if (count == newTokens.length) {
+                newTokens = Arrays.copyOf(newTokens, count * 2);
+                newStarts = Arrays.copyOf(newStarts, count * 2);
+            }
+            newTokens[count] = scanner.toToken();
+            newStarts[count] = start;
+            count++;
+        }
+        resyncIndex = tokenCount();
+        return count;
+    }
+
+    //==================== 以下为源程序的间隙缓冲区 ==============================//
+
+    private int sourceLength() {
+        return text.length - (gapEnd - gapStart);
+    }
+
+    private byte byteAt(int offset) {
+        return text[offset < gapStart ? offset : offset + gapEnd - gapStart];
+    }
+
+    /**
+     * 把间隙移到 offset 处, 只移动两者之间的内容
+     */
+    private void moveSourceGap(int offset) {
+        if (offset < gapStart) {
+            final var moved = gapStart - offset;
+            System.arraycopy(text, offset, text, gapEnd - moved, moved);
+            gapStart -= moved;
+            gapEnd -= moved;
+        } else if (offset > gapStart) {
+            final var moved = offset - gapStart;
+            System.arraycopy(text, gapEnd, text, gapStart, moved);
+            gapStart += moved;
+            gapEnd += moved;
+        }
+    }
+
+    private void ensureSourceGap(int needed) {
+        if (gapEnd - gapStart >= needed) {
+            return;
+        }
+        final var tail = text.length - gapEnd;
+        final var capacity = Math.max(text.length * 2, gapStart + needed + tail + MIN_GAP);
+        final var newText = Arrays.copyOf(text, capacity);
+        System.arraycopy(text, gapEnd, newText, capacity - tail, tail);
+        text = newText;
+        gapEnd = capacity - tail;
+    }
+
+    //==================== 以下为词法单元的间隙缓冲区 ==============================//
+
+    /**
+     * @return 除 EOF 外的词法单元个数
+     */
+    private int tokenCount() {
+        return tokenGapStart + tokens.length - tokenGapEnd;
+    }
+
+    private int physicalIndex(int index) {
+        return index < tokenGapStart ? index : index + tokenGapEnd - tokenGapStart;
+    }
+
+    private int startAt(int index) {
+        return index < tokenGapStart ? starts[index] : starts[physicalIndex(index)] + sourceLength();
+    }
+
+    /**
+     * 把间隙移到第 index 个词法单元之前, 移过间隙的词法单元在绝对偏移与相对于末尾的偏移之间转换. 间隙为空时原地转换
+     */
+    private void moveTokenGap(int index) {
+        final var length = sourceLength();
+        while (tokenGapStart > index) {
+            tokenGapStart--;
+            tokenGapEnd--;
+            tokens[tokenGapEnd] = tokens[tokenGapStart];
+            starts[tokenGapEnd] = starts[tokenGapStart] - length;
+            if (tokenGapStart != tokenGapEnd) {
+                tokens[tokenGapStart] = null;
+            }
+        }
+        while (tokenGapStart < index) {
+            tokens[tokenGapStart] = tokens[tokenGapEnd];
+            starts[tokenGapStart] = starts[tokenGapEnd] + length;
+            if (tokenGapStart != tokenGapEnd) {
+                tokens[tokenGapEnd] = null;
+            }
+            tokenGapStart++;
+            tokenGapEnd++;
+        }
+    }
+
+    /**
+     * 把 newTokens 中的前 count 个词法单元放在间隙的开头
+     */
+    private void insertTokens(int count) {
+        if (tokenGapEnd - tokenGapStart < count) {
+            final var tail = tokens.length - tokenGapEnd;
+            final var capacity = Math.max(tokens.length * 2, tokenGapStart + count + tail + MIN_GAP);
+            final var newTokenArray = Arrays.copyOf(tokens, capacity);
+            final var newStartArray = Arrays.copyOf(starts, capacity);
+            System.arraycopy(tokens, tokenGapEnd, newTokenArray, capacity - tail, tail);
+            System.arraycopy(starts, tokenGapEnd, newStartArray, capacity - tail, tail);
+            Arrays.fill(newTokenArray, tokenGapStart, capacity - tail, null);
+            tokens = newTokenArray;
+            starts = newStartArray;
+            tokenGapEnd = capacity - tail;
+        }
+        System.arraycopy(newTokens, 0, tokens, tokenGapStart, count);
+        System.arraycopy(newStarts, 0, starts, tokenGapStart, count);
+        Arrays.fill(newTokens, 0, count, null);
+        tokenGapStart += count;
+    }
+
+    /**
+     * @return 起始偏移不小于 offset 的第一个词法单元的下标
+     */
+    private int lowerBound(int offset) {
+        var lo = 0;
+        var hi = tokenCount();
+        while (lo < hi) {
+            final var mid = (lo + hi) >>> 1;
+            if (startAt(mid) < offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private boolean isIdentifier(Token token) {
+        return token.getKind() == identifierKind;
+    }
+
+    /**
+     * 词法单元序列的只读视图, 末尾为 EOF
+     */
+    private final class TokenView extends AbstractList<Token> implements RandomAccess {
+        @Override
+        public Token get(int index) {
+            Objects.checkIndex(index, size());
+            return index == tokenCount() ? EOF : tokens[physicalIndex(index)];
+        }
+
+        @Override
+        public int size() {
+            return lexed ? tokenCount() + 1 : 0;
+        }
+    }
+
+    private static final int MIN_GAP = 1024;
+    private static final Token EOF = Token.eof();
+
+    private final SymbolTable symbolTable;
+    private final TokenKind identifierKind;
+    private boolean lexed = false;
+
+    // 源程序的间隙缓冲区, [gapStart, gapEnd) 为间隙
+    private byte[] text = new byte[0];
+    private int gapStart = 0;
+    private int gapEnd = 0;
+
+    // 除 EOF 外的词法单元的间隙缓冲区, [tokenGapStart, tokenGapEnd) 为间隙.
+    // 间隙之前的 starts 为绝对偏移, 间隙之后的为相对于源程序末尾的偏移 (非正数)
+    private Token[] tokens = new Token[MIN_GAP];
+    private int[] starts = new int[MIN_GAP];
+    private int tokenGapStart = 0;
+    private int tokenGapEnd = MIN_GAP;
+    private final List<Token> tokenView = new TokenView();
+
+    // 重新分析的结果, 在编辑之间重复使用
+    private Token[] newTokens = new Token[64];
+    private int[] newStarts = new int[64];
+    private int resyncIndex = 0;
+
+    // 各标识符在词法单元序列中的出现次数
+    private final Map<String, Integer> identifierCounts = new HashMap<>();
+}
@@ -0,0 +1,174 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 关键字的完美哈希表
+ * <br>
+ * 采用 CHD (Compress, Hash and Displace) 的思路构造: 先用一次哈希把关键字分到若干个桶中, 再按桶从大到小为每个桶寻找一个位移值,
+ * 使桶内所有关键字经位移后的哈希值都落在表中互不相同的空槽上. 查找时只需对字节区间做一次哈希,
+ * 得到桶号与槽号, 再与槽中的关键字逐字节比较即可, 整个过程不构造 String, 也不分配任何对象.
+ *
+ * @see LexerDfa
+ */
+final class KeywordTable {
+    /**
+     * @param keywords 关键字文本到词法单元类型的映射
+     */
+    KeywordTable(Map<String, TokenKind> keywords) {
+        final var keys = new ArrayList<>(keywords.keySet());
+        final var count = keys.size();
+        this.bucketCount = Math.max(1, (count + 3) / 4);
+        this.displacements = new int[bucketCount];
+
+        var size = Math.max(1, count);
+        while (!tryBuild(keys, size)) {
+            // 位移值搜索失败时扩大表再重试, 对于关键字这样的小集合几乎不会发生
+            size = size * 2;
+        }
+
+        this.slotKinds = new TokenKind[slotKeys.length];
+        for (int slot = 0; slot < slotKeys.length; slot++) {
+            if (slotKeys[slot] != null) {
+                slotKinds[slot] = keywords.get(new String(slotKeys[slot], StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    /**
+     * 查找字节区间 [start, end) 是否为关键字
+     *
+     * @param source 缓冲区
+     * @param start  起始偏移 (包含)
+     * @param end    结束偏移 (不包含)
+     * @return 该关键字对应的词法单元类型, 不是关键字时返回 null
+     */
+    TokenKind lookup(ByteBuffer source, int start, int end) {
+        final var length = end - start;
+        if (length < minLength || length > maxLength) {
+            return null;
+        }
+
+        var hash = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ (source.get(i) & 0xFF)) * FNV_PRIME;
+        }
+
+        final var slot = slotOf(hash, displacements[bucketOf(hash)]);
+        final var key = slotKeys[slot];
+        if (key == null || key.length != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != source.get(start + i)) {
+                return null;
+            }
+        }
+        return slotKinds[slot];
+    }
+
+    /**
+     * 尝试以 size 为表大小构造完美哈希
+     *
+     * @return 是否成功为每个桶都找到了位移值
+     */
+    private boolean tryBuild(List<String> keys, int size) {
+        slotKeys = new byte[size][];
+        minLength = Integer.MAX_VALUE;
+        maxLength = 0;
+
+        final var buckets = new ArrayList<List<byte[]>>();
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (final var key : keys) {
+            final var bytes = key.getBytes(StandardCharsets.US_ASCII);
+            buckets.get(bucketOf(hash(bytes))).add(bytes);
+            minLength = Math.min(minLength, bytes.length);
+            maxLength = Math.max(maxLength, bytes.length);
+        }
+
+        // 先处理大桶, 此时空槽最多, 最容易找到合适的位移值
+        final var order = new ArrayList<Integer>();
+        for (int i = 0; i < bucketCount; i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt((Integer bucket) -> buckets.get(bucket).size()).reversed());
+
+        for (final var bucket : order) {
+            final var members = buckets.get(bucket);
+            if (members.isEmpty()) {
+                continue;
+            }
+
+            var found = false;
+            for (int displacement = 0; displacement < MAX_DISPLACEMENT && !found; displacement++) {
+                final var slots = new int[members.size()];
+                found = true;
+                for (int i = 0; i < members.size() && found; i++) {
+                    slots[i] = slotOf(hash(members.get(i)), displacement);
+                    found = slotKeys[slots[i]] == null;
+                    for (int j = 0; j < i && found; j++) {
+                        found = slots[j] != slots[i];
+                    }
+                }
+
+                if (found) {
+                    displacements[bucket] = displacement;
+                    for (int i = 0; i < members.size(); i++) {
+                        slotKeys[slots[i]] = members.get(i);
+                    }
+                }
+            }
+
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int bucketOf(long hash) {
+        return (int) Long.remainderUnsigned(mix(hash), bucketCount);
+    }
+
+    private int slotOf(long hash, int displacement) {
+        return (int) Long.remainderUnsigned(mix(hash ^ (displacement * 0x9E3779B97F4A7C15L + 1)), slotKeys.length);
+    }
+
+    private static long hash(byte[] bytes) {
+        var hash = FNV_OFFSET;
+        for (final var b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * 64 位哈希值的混合函数 (来自 MurmurHash3 的 fmix64), 使同一个 FNV 哈希值可以派生出互相独立的桶号与槽号
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final int MAX_DISPLACEMENT = 1 << 16;
+
+    private final int bucketCount;
+    private final int[] displacements;
+    private byte[][] slotKeys;
+    private final TokenKind[] slotKinds;
+    private int minLength;
+    private int maxLength;
+}
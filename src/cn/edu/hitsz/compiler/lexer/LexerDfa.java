@@ -0,0 +1,256 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由码点文件生成的词法分析 DFA
+ * <br>
+ * 码点文件 (coding_map.csv) 中的标识符分为以下几类, 分别生成对应的识别规则:
+ * <ul>
+ *     <li>id 与 IntConst: 分别对应 {@code [A-Za-z][A-Za-z0-9]*} 与 {@code [0-9]+}</li>
+ *     <li>由字母组成的关键字 (如 int, return): 由 id 的规则识别后再查关键字的完美哈希表 {@link KeywordTable}, 不进入 DFA</li>
+ *     <li>Semicolon 等在码点文件中以名字代替符号的词法单元: 通过 {@code ALIASES} 换成对应的符号</li>
+ *     <li>其它标识符 (如 +, **): 其文本本身就是词法单元的符号</li>
+ * </ul>
+ * 所有符号先构成一棵字典树, 与 id, IntConst 的规则一起组成 DFA, 再经过最小化得到最终的转移表.
+ * 转移表是以 {@code [状态][字符类]} 为下标的稠密二维数组, ASCII 字符先经查表映射为字符类, 因此扫描每个字节只需一次查表.
+ * 普通模式与 isExtra 模式读取的码点文件不同, 但使用同一个生成器, 增加新的运算符时无需修改代码.
+ *
+ * @see ByteScanner
+ */
+final class LexerDfa {
+    /**
+     * 码点文件中以名字代替符号的词法单元
+     */
+    private static final Map<String, String> ALIASES = Map.of("Semicolon", ";");
+
+    /**
+     * 无法识别的字符所属的字符类
+     */
+    static final int CLASS_OTHER = 0;
+    /**
+     * 空白字符所属的字符类
+     */
+    static final int CLASS_WHITESPACE = 1;
+    static final int CLASS_LETTER = 2;
+    static final int CLASS_DIGIT = 3;
+
+    /**
+     * 转移表中代表没有转移的值
+     */
+    static final int NO_TRANSITION = -1;
+
+    private static LexerDfa instance = null;
+
+    /**
+     * 获得根据当前码点文件生成的 DFA, 首次调用时生成, 之后复用. 须在 {@code TokenKind.loadTokenKinds} 之后调用
+     *
+     * @return DFA
+     */
+    static synchronized LexerDfa getInstance() {
+        if (instance == null) {
+            instance = new LexerDfa(TokenKind.allAllowedTokenKinds());
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return 起始状态
+     */
+    int start() {
+        return 0;
+    }
+
+    /**
+     * @param c 字节
+     * @return 该字节所属的字符类
+     */
+    int classOf(byte c) {
+        return c < 0 ? CLASS_OTHER : charClasses[c];
+    }
+
+    /**
+     * @param state     当前状态
+     * @param charClass 读入字符的字符类
+     * @return 转移到的状态, 没有转移时为 {@code NO_TRANSITION}
+     */
+    int next(int state, int charClass) {
+        return transitions[state][charClass];
+    }
+
+    /**
+     * @param state 状态
+     * @return 在该状态结束时识别出的词法单元类型, 非接受状态为 null
+     */
+    TokenKind accepting(int state) {
+        return accepting[state];
+    }
+
+    /**
+     * @return 码点文件中所有关键字构成的完美哈希表
+     */
+    KeywordTable keywords() {
+        return keywords;
+    }
+
+    /**
+     * @return DFA 的状态数
+     */
+    int stateCount() {
+        return transitions.length;
+    }
+
+    private LexerDfa(Map<String, TokenKind> allowed) {
+        final var identifierKind = allowed.get("id");
+        final var intConstKind = allowed.get("IntConst");
+        if (identifierKind == null || intConstKind == null) {
+            throw new RuntimeException("Coding map must contain id and IntConst");
+        }
+
+        // 收集所有由符号组成的词法单元, 并为其中出现的每个字符分配一个字符类
+        // 由字母组成的则作为关键字
+        final var symbols = new HashMap<String, TokenKind>();
+        final var words = new HashMap<String, TokenKind>();
+        var classCount = CLASS_DIGIT + 1;
+        for (final var entry : allowed.entrySet()) {
+            final var kind = entry.getValue();
+            final var text = ALIASES.getOrDefault(entry.getKey(), entry.getKey());
+            if (kind == TokenKind.eof() || kind == identifierKind || kind == intConstKind) {
+                continue;
+            }
+            if (isWord(text)) {
+                words.put(text, kind);
+                continue;
+            }
+
+            for (final var c : text.toCharArray()) {
+                if (c >= 128 || Character.isLetterOrDigit(c) || Character.isWhitespace(c)) {
+                    throw new RuntimeException("Unsupported token in coding map: " + entry.getKey());
+                }
+                if (charClasses[c] == CLASS_OTHER) {
+                    charClasses[c] = (byte) classCount++;
+                }
+            }
+            symbols.put(text, kind);
+        }
+        for (var c = 'a'; c <= 'z'; c++) {
+            charClasses[c] = CLASS_LETTER;
+            charClasses[Character.toUpperCase(c)] = CLASS_LETTER;
+        }
+        for (var c = '0'; c <= '9'; c++) {
+            charClasses[c] = CLASS_DIGIT;
+        }
+        for (final var c : new char[]{' ', '\t', '\r', '\n'}) {
+            charClasses[c] = CLASS_WHITESPACE;
+        }
+
+        // 先构造未最小化的 DFA: 状态 0 为起始状态, 符号构成字典树, id 与 IntConst 各自有一个自环状态
+        final var rawTransitions = new ArrayList<int[]>();
+        final var rawAccepting = new ArrayList<TokenKind>();
+        addState(rawTransitions, rawAccepting, classCount);
+        for (final var entry : symbols.entrySet()) {
+            var state = 0;
+            for (final var c : entry.getKey().toCharArray()) {
+                final var charClass = charClasses[c];
+                if (rawTransitions.get(state)[charClass] == NO_TRANSITION) {
+                    rawTransitions.get(state)[charClass] = addState(rawTransitions, rawAccepting, classCount);
+                }
+                state = rawTransitions.get(state)[charClass];
+            }
+            rawAccepting.set(state, entry.getValue());
+        }
+
+        final var identifierState = addState(rawTransitions, rawAccepting, classCount);
+        rawAccepting.set(identifierState, identifierKind);
+        rawTransitions.get(0)[CLASS_LETTER] = identifierState;
+        rawTransitions.get(identifierState)[CLASS_LETTER] = identifierState;
+        rawTransitions.get(identifierState)[CLASS_DIGIT] = identifierState;
+
+        final var intConstState = addState(rawTransitions, rawAccepting, classCount);
+        rawAccepting.set(intConstState, intConstKind);
+        rawTransitions.get(0)[CLASS_DIGIT] = intConstState;
+        rawTransitions.get(intConstState)[CLASS_DIGIT] = intConstState;
+
+        this.keywords = new KeywordTable(words);
+
+        // 然后最小化
+        final var blocks = minimize(rawTransitions, rawAccepting);
+        final var blockCount = Arrays.stream(blocks).max().orElse(0) + 1;
+        this.transitions = new int[blockCount][classCount];
+        this.accepting = new TokenKind[blockCount];
+        for (int state = 0; state < rawTransitions.size(); state++) {
+            final var block = blocks[state];
+            accepting[block] = rawAccepting.get(state);
+            for (int charClass = 0; charClass < classCount; charClass++) {
+                final var to = rawTransitions.get(state)[charClass];
+                transitions[block][charClass] = to == NO_TRANSITION ? NO_TRANSITION : blocks[to];
+            }
+        }
+    }
+
+    /**
+     * 使用 Moore 算法最小化 DFA: 先按接受的词法单元类型划分状态, 再不断按各字符类的转移目标细分, 直到划分不再变化
+     *
+     * @param transitions 各状态的转移
+     * @param accepting   各状态接受的词法单元类型
+     * @return 各状态所属的等价类编号, 起始状态所属的等价类编号为 0
+     */
+    private static int[] minimize(List<int[]> transitions, List<TokenKind> accepting) {
+        final var stateCount = transitions.size();
+        var blocks = new int[stateCount];
+
+        // HashMap 允许 null 作为键, 所有非接受状态的初始等价类即为 null 对应的等价类
+        final var initialBlocks = new HashMap<TokenKind, Integer>();
+        for (int state = 0; state < stateCount; state++) {
+            blocks[state] = initialBlocks.computeIfAbsent(accepting.get(state), kind -> initialBlocks.size());
+        }
+        var blockCount = initialBlocks.size();
+
+        while (true) {
+            // 等价类编号按其中第一个状态出现的顺序分配, 因此起始状态所属的等价类总是 0
+            final var signatures = new HashMap<List<Integer>, Integer>();
+            final var refined = new int[stateCount];
+            for (int state = 0; state < stateCount; state++) {
+                final var signature = new ArrayList<Integer>();
+                signature.add(blocks[state]);
+                for (final var to : transitions.get(state)) {
+                    signature.add(to == NO_TRANSITION ? NO_TRANSITION : blocks[to]);
+                }
+                refined[state] = signatures.computeIfAbsent(signature, key -> signatures.size());
+            }
+
+            if (signatures.size() == blockCount) {
+                return refined;
+            }
+            blocks = refined;
+            blockCount = signatures.size();
+        }
+    }
+
+    /**
+     * 在未最小化的 DFA 中新增一个没有任何转移的非接受状态
+     *
+     * @return 新状态的编号
+     */
+    private static int addState(List<int[]> transitions, List<TokenKind> accepting, int classCount) {
+        final var row = new int[classCount];
+        Arrays.fill(row, NO_TRANSITION);
+        transitions.add(row);
+        accepting.add(null);
+        return transitions.size() - 1;
+    }
+
+    private static boolean isWord(String text) {
+        return text.chars().allMatch(Character::isLetterOrDigit);
+    }
+
+    private final byte[] charClasses = new byte[128];
+    private final int[][] transitions;
+    private final TokenKind[] accepting;
+    private final KeywordTable keywords;
+}
@@ -5,10 +5,18 @@ import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.StreamSupport;
 
 /**
@@ -23,6 +31,12 @@ public class LexicalAnalyzer {
     private final SymbolTable symbolTable;
     public String sourceString ="";
     public List<Token> tokens = new ArrayList<>();
+    // 以内存映射方式加载的源程序, 为 null 时使用 sourceString
+    private ByteBuffer mappedSource = null;
+    // 是否已经调用过 run 方法, 未调用时 getTokens 按需进行词法分析
+    private boolean hasRun = false;
+    // 以 runIntoBuffer 进行词法分析时的结果, 此时不使用 tokens
+    private TokenBuffer tokenBuffer = null;
 
     public LexicalAnalyzer(SymbolTable symbolTable) {
         this.symbolTable = symbolTable;
@@ -42,6 +56,17 @@ public class LexicalAnalyzer {
         System.out.println(sourceString);
     }
 
+    /**
+     * 以内存映射的方式加载源程序, 之后的 {@code run} 将直接在映射的字节上进行词法分析
+     * <br>
+     * 该方式不会把源程序复制为 String, 适用于很大的源程序; 源程序须为 ASCII 编码
+     *
+     * @param path 路径
+     */
+    public void loadMappedFile(String path) {
+        mappedSource = FileUtils.mapFile(path);
+    }
+
     /**
      * 执行词法分析, 准备好用于返回的 token 列表 <br>
      * 需要维护实验一所需的符号表条目, 而得在语法分析中才能确定的符号表条目的成员可以先设置为 null
@@ -50,6 +75,15 @@ public class LexicalAnalyzer {
         // 使用状态机
         // 词法分析过程中需要维护符号表
         // 词法分析过程中需要维护 Token 列表
+        hasRun = true;
+        tokenBuffer = null;
+        // 重复运行时不保留上一次的结果
+        tokens = new ArrayList<>();
+        if (mappedSource != null) {
+            runOnMappedSource();
+            return;
+        }
+
         int i = 0;
         enum State{
             IDLE,
@@ -153,15 +187,234 @@ public class LexicalAnalyzer {
     }
 
     /**
-     * 获得词法分析的结果, 保证在调用了 run 方法之后调用
+     * 在内存映射的源程序上执行词法分析, 只有标识符与整数常量会构造出 String
+     */
+    private void runOnMappedSource() {
+        final var scanner = new ByteScanner(mappedSource, 0, mappedSource.limit());
+        while (scanner.advance()) {
+            final var token = scanner.toToken();
+            if (scanner.isIdentifier()) {
+                symbolTable.getOrAdd(token.getText());
+            }
+            tokens.add(token);
+        }
+        tokens.add(Token.eof());
+    }
+
+    /**
+     * 执行词法分析, 但将结果存入紧凑的 TokenBuffer 而非 Token 列表
+     * <br>
+     * 之后 getTokens 与 dumpTokens 都从 TokenBuffer 中按需构造 Token, 解析器也可以通过 getTokenBuffer 直接读取它
+     */
+    public void runIntoBuffer() {
+        hasRun = true;
+        final var source = sourceBuffer();
+        final var buffer = new TokenBuffer(source);
+        final var scanner = new ByteScanner(source, 0, source.limit());
+        while (scanner.advance()) {
+            final var length = scanner.tokenEnd() - scanner.tokenStart();
+            if (!scanner.isIdentifier()) {
+                buffer.append(scanner.kind(), scanner.tokenStart(), length);
+            } else if (buffer.appendIdentifier(scanner.kind(), scanner.tokenStart(), length)) {
+                // 每个标识符只在第一次出现时加入符号表
+                symbolTable.getOrAdd(buffer.symbolText(buffer.symbolCount() - 1));
+            }
+        }
+        buffer.appendEof();
+        tokenBuffer = buffer;
+    }
+
+    /**
+     * @return runIntoBuffer 的结果, 未以该方式进行词法分析时为 null
+     */
+    public TokenBuffer getTokenBuffer() {
+        return tokenBuffer;
+    }
+
+    /**
+     * 并行地执行词法分析, 使用公共的 ForkJoinPool
      *
-     * @return Token 列表
+     * @see #runParallel(ForkJoinPool)
+     */
+    public void runParallel() {
+        runParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 并行地执行词法分析, 结果与 run 完全相同
+     * <br>
+     * TXTv2 中没有字符串字面量与注释, 语句总以分号结尾, 因此可以安全地在分号之后把源程序切分为若干块.
+     * 各块在 ForkJoinPool 上独立地进行词法分析, 最后按顺序拼接各块的 Token 列表. 符号表的插入是线程安全的.
+     *
+     * @param pool 执行词法分析的线程池
+     */
+    public void runParallel(ForkJoinPool pool) {
+        hasRun = true;
+        tokenBuffer = null;
+        final var source = sourceBuffer();
+        final var chunkSize = Math.max(MIN_CHUNK_SIZE, source.limit() / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        final var boundaries = splitAtSemicolons(source, chunkSize);
+
+        final List<List<Token>> chunkTokens = new ArrayList<>(Collections.nCopies(boundaries.length - 1, null));
+        pool.invoke(new ChunkLexTask(source, boundaries, chunkTokens, 0, boundaries.length - 1));
+
+        tokens = new ArrayList<>(chunkTokens.stream().mapToInt(List::size).sum() + 1);
+        chunkTokens.forEach(tokens::addAll);
+        tokens.add(Token.eof());
+    }
+
+    // 并行词法分析时每块的最小字节数, 以及每个线程平均分到的块数
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * 将源程序大致按 chunkSize 切分, 每个切分点都位于某个分号之后
+     *
+     * @return 各块的边界, 第 i 块为 [boundaries[i], boundaries[i + 1])
+     */
+    private static int[] splitAtSemicolons(ByteBuffer source, int chunkSize) {
+        final var boundaries = new ArrayList<Integer>();
+        boundaries.add(0);
+        var position = 0;
+        while (position + chunkSize < source.limit()) {
+            position += chunkSize;
+            while (position < source.limit() && source.get(position - 1) != ';') {
+                position++;
+            }
+            boundaries.add(position);
+        }
+        if (position < source.limit()) {
+            boundaries.add(source.limit());
+        }
+        return boundaries.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 对 [lo, hi) 范围内的块进行词法分析的任务, 范围内多于一块时二分后并行执行
+     */
+    private class ChunkLexTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer source;
+        private final int[] boundaries;
+        private final List<List<Token>> results;
+        private final int lo;
+        private final int hi;
+
+        private ChunkLexTask(ByteBuffer source, int[] boundaries, List<List<Token>> results, int lo, int hi) {
+            this.source = source;
+            this.boundaries = boundaries;
+            this.results = results;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                final var mid = (lo + hi) >>> 1;
+                invokeAll(
+                    new ChunkLexTask(source, boundaries, results, lo, mid),
+                    new ChunkLexTask(source, boundaries, results, mid, hi)
+                );
+                return;
+            }
+            if (hi == lo) {
+                return;
+            }
+
+            final var chunk = new ArrayList<Token>();
+            // 同一块内重复出现的标识符只插入符号表一次, 以减少线程间的竞争
+            final var seen = new HashSet<String>();
+            final var scanner = new ByteScanner(source, boundaries[lo], boundaries[hi]);
+            while (scanner.advance()) {
+                final var token = scanner.toToken();
+                if (scanner.isIdentifier() && seen.add(token.getText())) {
+                    symbolTable.getOrAdd(token.getText());
+                }
+                chunk.add(token);
+            }
+            results.set(lo, chunk);
+        }
+    }
+
+    /**
+     * 获得词法分析的结果
+     * <br>
+     * 若已调用过 run 方法, 则返回完整的 Token 列表; 若调用的是 runIntoBuffer, 则返回 TokenBuffer 本身, 迭代时按需构造 Token;
+     * 否则返回一个按需分析的流式序列, 每次迭代只向前分析一个词法单元,
+     * 词法单元所占的内存不随源程序大小增长. 流式序列在迭代到标识符时才将其加入符号表, 每次调用 iterator 都会从头重新分析.
+     *
+     * @return Token 序列
      */
     public Iterable<Token> getTokens() {
         // 词法分析过程可以使用 Stream 或 Iterator 实现按需分析
         // 亦可以直接分析完整个文件
         // 总之实现过程能转化为一列表即可
-        return tokens;
+        if (tokenBuffer != null) {
+            return tokenBuffer;
+        }
+        if (hasRun) {
+            return tokens;
+        }
+
+        return () -> new StreamingTokenIterator(sourceBuffer());
+    }
+
+    /**
+     * @return 源程序所在的字节缓冲区, 未使用内存映射加载时由 sourceString 包装而来
+     */
+    private ByteBuffer sourceBuffer() {
+        if (mappedSource != null) {
+            return mappedSource;
+        }
+
+        return ByteBuffer.wrap(sourceString.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 按需进行词法分析的 Token 迭代器, 在扫描完所有词法单元后产生一个 EOF
+     */
+    private class StreamingTokenIterator implements Iterator<Token> {
+        private final ByteScanner scanner;
+        private Token lookahead = null;
+        private boolean eofReturned = false;
+
+        private StreamingTokenIterator(ByteBuffer source) {
+            this.scanner = new ByteScanner(source, 0, source.limit());
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (lookahead != null) {
+                return true;
+            }
+            if (eofReturned) {
+                return false;
+            }
+
+            if (scanner.advance()) {
+                lookahead = scanner.toToken();
+                if (scanner.isIdentifier()) {
+                    symbolTable.getOrAdd(lookahead.getText());
+                }
+            } else {
+                lookahead = Token.eof();
+                eofReturned = true;
+            }
+            return true;
+        }
+
+        @Override
+        public Token next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final var token = lookahead;
+            lookahead = null;
+            return token;
+        }
     }
 
     public void dumpTokens(String path) {
@@ -0,0 +1,302 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 以 "数组结构体" 形式紧凑存储的词法单元序列
+ * <br>
+ * 每个词法单元只占用四个 int: 类型的码点 ({@link TokenKind#getCode()}), 在源程序中的起始偏移与长度, 以及符号编号.
+ * 标识符按文本去重后得到符号编号, 同一标识符的所有出现共享同一个 String, 且只在其第一次出现时构造;
+ * 其余词法单元不构造任何对象. Token 对象只在调用 {@code get} 或迭代时按需构造, 作为该序列的一个视图.
+ * SyntaxAnalyzer 加载 TokenBuffer 时只读取类型的码点, 仅在移入时构造 Token.
+ *
+ * @see LexicalAnalyzer#runIntoBuffer()
+ */
+public final class TokenBuffer implements Iterable<Token> {
+    /**
+     * 不是标识符的词法单元的符号编号
+     */
+    public static final int NO_SYMBOL = -1;
+
+    /**
+     * @return 词法单元的个数, 包括末尾的 EOF
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index 词法单元的下标
+     * @return 该词法单元类型的码点, EOF 的码点为 -1
+     */
+    public int kindCode(int index) {
+        checkIndex(index);
+        return kinds[index];
+    }
+
+    /**
+     * @param index 词法单元的下标
+     * @return 该词法单元的类型
+     */
+    public TokenKind kind(int index) {
+        return kindsByCode[kindCode(index) + 1];
+    }
+
+    /**
+     * @param index 词法单元的下标
+     * @return 该词法单元在源程序中的起始偏移
+     */
+    public int start(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    /**
+     * @param index 词法单元的下标
+     * @return 该词法单元在源程序中的长度
+     */
+    public int length(int index) {
+        checkIndex(index);
+        return lengths[index];
+    }
+
+    /**
+     * @param index 词法单元的下标
+     * @return 该标识符的符号编号, 不是标识符时为 {@code NO_SYMBOL}
+     */
+    public int symbolId(int index) {
+        checkIndex(index);
+        return symbolIds[index];
+    }
+
+    /**
+     * @param symbolId 符号编号
+     * @return 该符号的文本
+     */
+    public String symbolText(int symbolId) {
+        return symbols.get(symbolId);
+    }
+
+    /**
+     * @return 不同标识符的个数
+     */
+    public int symbolCount() {
+        return symbols.size();
+    }
+
+    /**
+     * @param index 词法单元的下标
+     * @return 该词法单元的文本, 与对应 Token 的 getText 相同
+     */
+    public String text(int index) {
+        final var symbolId = symbolId(index);
+        if (symbolId != NO_SYMBOL) {
+            return symbols.get(symbolId);
+        } else if (kinds[index] == intConstCode) {
+            final var bytes = new byte[lengths[index]];
+            source.get(starts[index], bytes);
+            return new String(bytes, StandardCharsets.US_ASCII);
+        } else {
+            return "";
+        }
+    }
+
+    /**
+     * 按需构造下标处的词法单元, 每次调用都会构造新的 Token 对象
+     *
+     * @param index 词法单元的下标
+     * @return Token 视图
+     */
+    public Token get(int index) {
+        final var kind = kind(index);
+        if (kind == TokenKind.eof()) {
+            return Token.eof();
+        }
+        return Token.normal(kind, text(index));
+    }
+
+    /**
+     * @return 按顺序按需构造各 Token 的迭代器
+     */
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Token next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    //==================== 以下为构造相关代码 ==============================//
+
+    /**
+     * @param source 词法单元所在的源程序
+     */
+    TokenBuffer(ByteBuffer source) {
+        this.source = source;
+        this.intConstCode = TokenKind.fromString("IntConst").getCode();
+
+        var maxCode = 0;
+        for (final var kind : TokenKind.allAllowedTokenKinds().values()) {
+            maxCode = Math.max(maxCode, kind.getCode());
+        }
+        // 码点从 -1 (EOF) 开始, 因此以 code + 1 为下标
+        kindsByCode = new TokenKind[maxCode + 2];
+        for (final var kind : TokenKind.allAllowedTokenKinds().values()) {
+            kindsByCode[kind.getCode() + 1] = kind;
+        }
+    }
+
+    /**
+     * 追加一个不是标识符的词法单元
+     */
+    void append(TokenKind kind, int start, int length) {
+        append(kind.getCode(), start, length, NO_SYMBOL);
+    }
+
+    /**
+     * 追加一个标识符, 文本相同的标识符得到相同的符号编号
+     *
+     * @return 该标识符是否是第一次出现
+     */
+    boolean appendIdentifier(TokenKind kind, int start, int length) {
+        final var symbolCountBefore = symbols.size();
+        append(kind.getCode(), start, length, internSymbol(start, length));
+        return symbols.size() != symbolCountBefore;
+    }
+
+    /**
+     * 追加末尾的 EOF, 之后不再追加, 因此把各数组缩小到实际的大小
+     */
+    void appendEof() {
+        append(TokenKind.eof().getCode(), source.limit(), 0, NO_SYMBOL);
+        kinds = Arrays.copyOf(kinds, size);
+        starts = Arrays.copyOf(starts, size);
+        lengths = Arrays.copyOf(lengths, size);
+        symbolIds = Arrays.copyOf(symbolIds, size);
+    }
+
+    private void append(int code, int start, int length, int symbolId) {
+        if (size == kinds.length) {
+            final var capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            symbolIds = Arrays.copyOf(symbolIds, capacity);
+        }
+
+        kinds[size] = code;
+        starts[size] = start;
+        lengths[size] = length;
+        symbolIds[size] = symbolId;
+        size++;
+    }
+
+    /**
+     * 在以字节区间为键的开放寻址哈希表中查找符号编号, 不存在时新建符号. 只有新建符号时才构造 String
+     *
+     * @return 符号编号
+     */
+    private int internSymbol(int start, int length) {
+        var hash = 0x811C9DC5;
+        for (int i = start; i < start + length; i++) {
+            hash = (hash ^ (source.get(i) & 0xFF)) * 0x01000193;
+        }
+
+        var slot = hash & (internSlots.length - 1);
+        while (internSlots[slot] != NO_SYMBOL) {
+            final var symbolId = internSlots[slot];
+            if (symbolHashes[symbolId] == hash && sameBytes(symbolId, start, length)) {
+                return symbolId;
+            }
+            slot = (slot + 1) & (internSlots.length - 1);
+        }
+
+        final var symbolId = symbols.size();
+        final var bytes = new byte[length];
+        source.get(start, bytes);
+        symbols.add(new String(bytes, StandardCharsets.US_ASCII));
+        if (symbolId == symbolHashes.length) {
+            symbolHashes = Arrays.copyOf(symbolHashes, symbolId * 2);
+            symbolStarts = Arrays.copyOf(symbolStarts, symbolId * 2);
+        }
+        symbolHashes[symbolId] = hash;
+        symbolStarts[symbolId] = start;
+        internSlots[slot] = symbolId;
+
+        // 保持装载因子不超过 1/2
+        if (symbols.size() * 2 > internSlots.length) {
+            rehash();
+        }
+        return symbolId;
+    }
+
+    private boolean sameBytes(int symbolId, int start, int length) {
+        if (symbols.get(symbolId).length() != length) {
+            return false;
+        }
+        final var symbolStart = symbolStarts[symbolId];
+        for (int i = 0; i < length; i++) {
+            if (source.get(symbolStart + i) != source.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        internSlots = newSlots(internSlots.length * 2);
+        for (int symbolId = 0; symbolId < symbols.size(); symbolId++) {
+            var slot = symbolHashes[symbolId] & (internSlots.length - 1);
+            while (internSlots[slot] != NO_SYMBOL) {
+                slot = (slot + 1) & (internSlots.length - 1);
+            }
+            internSlots[slot] = symbolId;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    private final ByteBuffer source;
+    private final TokenKind[] kindsByCode;
+    private final int intConstCode;
+
+    private int size = 0;
+    private int[] kinds = new int[1024];
+    private int[] starts = new int[1024];
+    private int[] lengths = new int[1024];
+    private int[] symbolIds = new int[1024];
+
+    // 符号编号到文本的映射, 以及用于去重的哈希表
+    private final List<String> symbols = new ArrayList<>();
+    private int[] symbolHashes = new int[64];
+    private int[] symbolStarts = new int[64];
+    private int[] internSlots = newSlots(128);
+
+    private static int[] newSlots(int capacity) {
+        final var slots = new int[capacity];
+        Arrays.fill(slots, NO_SYMBOL);
+        return slots;
+    }
+}
@@ -54,4 +54,14 @@ public interface ActionObserver {
      * @param table 符号表
      */
     void setSymbolTable(SymbolTable table);
+
+    /**
+     * 声明该观察者关心的事件, 驱动程序在注册观察者时调用此函数, 之后只会在这些事件发生时调用对应的函数.
+     * 默认关心所有事件
+     *
+     * @return 该观察者的订阅
+     */
+    default ActionSubscription subscription() {
+        return ActionSubscription.all();
+    }
 }
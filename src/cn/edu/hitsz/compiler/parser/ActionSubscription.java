@@ -0,0 +1,100 @@
+package cn.edu.hitsz.compiler.parser;
+
+import java.util.BitSet;
+
+/**
+ * 动作观察者关心的事件
+ * <br>
+ * 观察者通过 {@link ActionObserver#subscription()} 声明自己需要哪些事件: 移入, 接受, 以及对哪些产生式的规约.
+ * 驱动程序在注册观察者时据此为每条产生式预先建立分派表, 执行动作时只通知关心该事件的观察者.
+ * <br>
+ * 该类是不可变的, {@code withXXX} 方法返回新的对象, 例如:
+ * <pre>{@code
+ * ActionSubscription.none().withShift().withReduce(4, 5)
+ * }</pre>
+ */
+public final class ActionSubscription {
+    /**
+     * @return 关心所有事件的订阅, 未声明订阅的观察者即为此订阅
+     */
+    public static ActionSubscription all() {
+        return ALL;
+    }
+
+    /**
+     * @return 不关心任何事件的订阅
+     */
+    public static ActionSubscription none() {
+        return NONE;
+    }
+
+    /**
+     * @return 在此基础上关心移入事件的订阅
+     */
+    public ActionSubscription withShift() {
+        return new ActionSubscription(true, accept, allReduces, reduces);
+    }
+
+    /**
+     * @return 在此基础上关心接受事件的订阅
+     */
+    public ActionSubscription withAccept() {
+        return new ActionSubscription(shift, true, allReduces, reduces);
+    }
+
+    /**
+     * @return 在此基础上关心对所有产生式的规约的订阅
+     */
+    public ActionSubscription withAllReduces() {
+        return new ActionSubscription(shift, accept, true, reduces);
+    }
+
+    /**
+     * @param productionIndices 产生式的编号, 即 {@code Production.index()}
+     * @return 在此基础上关心对这些产生式的规约的订阅
+     */
+    public ActionSubscription withReduce(int... productionIndices) {
+        final var newReduces = (BitSet) reduces.clone();
+        for (final var index : productionIndices) {
+            newReduces.set(index);
+        }
+        return new ActionSubscription(shift, accept, allReduces, newReduces);
+    }
+
+    /**
+     * @return 是否关心移入事件
+     */
+    public boolean shift() {
+        return shift;
+    }
+
+    /**
+     * @return 是否关心接受事件
+     */
+    public boolean accept() {
+        return accept;
+    }
+
+    /**
+     * @param productionIndex 产生式的编号
+     * @return 是否关心对该产生式的规约
+     */
+    public boolean reduce(int productionIndex) {
+        return allReduces || reduces.get(productionIndex);
+    }
+
+    private static final ActionSubscription ALL = new ActionSubscription(true, true, true, new BitSet());
+    private static final ActionSubscription NONE = new ActionSubscription(false, false, false, new BitSet());
+
+    private ActionSubscription(boolean shift, boolean accept, boolean allReduces, BitSet reduces) {
+        this.shift = shift;
+        this.accept = accept;
+        this.allReduces = allReduces;
+        this.reduces = reduces;
+    }
+
+    private final boolean shift;
+    private final boolean accept;
+    private final boolean allReduces;
+    private final BitSet reduces;
+}
@@ -0,0 +1,16 @@
+package cn.edu.hitsz.compiler.parser;
+
+/**
+ * 由 {@link ParserCodeGenerator} 根据分析表生成的专用解析器
+ * <br>
+ * 生成的解析器自行维护状态栈, 通过 LRDriver 的包内接口读取词法单元并通知观察者,
+ * 触发的事件及其顺序与 SyntaxAnalyzer 解释分析表时完全相同.
+ */
+interface GeneratedParser {
+    /**
+     * 对 driver 中加载的词法单元进行语法分析
+     *
+     * @param driver 提供词法单元并通知观察者的驱动程序
+     */
+    void parse(LRDriver driver);
+}
@@ -6,6 +6,7 @@ import cn.edu.hitsz.compiler.ir.IRValue;
 import cn.edu.hitsz.compiler.ir.IRVariable;
 import cn.edu.hitsz.compiler.ir.Instruction;
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
@@ -15,6 +16,7 @@ import cn.edu.hitsz.compiler.utils.FileUtils;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
+import java.util.function.Consumer;
 
 // TODO: 实验三: 实现 IR 生成
 
@@ -24,15 +26,45 @@ import java.util.Stack;
 public class IRGenerator implements ActionObserver {
 
     private SymbolTable symbolTable;
-    // value栈
+    // value栈, 只存放语句内部的值: 语句与分号不入栈, 因此栈的深度只与单条语句的嵌套深度有关
     private final Stack<IRValue> valueStack = new Stack<>();
     // IR指令
     private final List<Instruction> IRList = new ArrayList<>();
+    private final TokenKind semicolonKind = TokenKind.fromString("Semicolon");
+    // 逐语句输出 IR 的目标, 为 null 时保留全部指令
+    private Consumer<List<Instruction>> statementSink = null;
+
+    /**
+     * 设置逐语句输出 IR 的目标
+     * <br>
+     * 设置后每条语句规约完成时, 该语句生成的指令立即交给 sink, 之后不再保留, IR 占用的内存只与单条语句有关;
+     * 此时 {@link #getIR()} 只返回尚未交出的指令. 与 {@link ParserOptions#withStatementStreaming()} 一起使用,
+     * 可以在与程序长度无关的内存中完成语法分析与 IR 生成.
+     *
+     * @param sink 接收每条语句的指令, 传入的列表在调用之后会被清空, 需要时应复制; 为 null 时恢复保留全部指令
+     */
+    public void setStatementSink(Consumer<List<Instruction>> sink) {
+        this.statementSink = sink;
+    }
+
+    /**
+     * 一条语句规约完成, 需要时交出它的指令
+     */
+    private void finishStatement() {
+        if (statementSink != null) {
+            statementSink.accept(IRList);
+            IRList.clear();
+        }
+    }
 
 
     @Override
     public void whenShift(Status currentStatus, Token currentToken) {
         // TODO
+        if (currentToken.getKind() == semicolonKind) {
+            // 分号只出现在语句之间, 规约 S_list 时不需要它的值
+            return;
+        }
         String isNumber = "^[0-9]+$";
         if (currentToken.getText().matches(isNumber)) {
             // 如果是数字，将其转换为立即数压入栈中
@@ -53,13 +85,13 @@ public class IRGenerator implements ActionObserver {
                     valueStack.pop();// =
                     IRValue id = valueStack.pop();
                     IRList.add(Instruction.createMov((IRVariable) id, E));
-                    valueStack.push(null);
+                    finishStatement();
                 }
                 case 7 -> {//S->return E
                     IRValue E = valueStack.pop();
                     valueStack.pop();//return
                     IRList.add(Instruction.createRet(E));
-                    valueStack.push(null);
+                    finishStatement();
                 }
                 case 8 -> {//E->E + A
                     IRValue A = valueStack.pop();
@@ -102,6 +134,14 @@ public class IRGenerator implements ActionObserver {
                     valueStack.pop();//(
                     valueStack.push(E);
                 }
+                case 2, 3 -> {//S_list -> S Semicolon S_list, S_list -> S Semicolon
+                    // 语句与分号的值不入栈
+                }
+                case 4 -> {//S -> D id
+                    valueStack.pop();//id
+                    valueStack.pop();//D
+                    finishStatement();
+                }
                 default -> {
                     for (int i = 0; i < production.body().size(); i++) {
                         valueStack.pop();
@@ -116,13 +156,13 @@ public class IRGenerator implements ActionObserver {
                     valueStack.pop();// =
                     IRValue id = valueStack.pop();
                     IRList.add(Instruction.createMov((IRVariable) id, E));
-                    valueStack.push(null);
+                    finishStatement();
                 }
                 case 7 -> {//S->return E
                     IRValue E = valueStack.pop();
                     valueStack.pop();//return
                     IRList.add(Instruction.createRet(E));
-                    valueStack.push(null);
+                    finishStatement();
                 }
                 case 8 -> {//E->E + A
                     IRValue A = valueStack.pop();
@@ -157,6 +197,14 @@ public class IRGenerator implements ActionObserver {
                     valueStack.pop();//(
                     valueStack.push(E);
                 }
+                case 2, 3 -> {//S_list -> S Semicolon S_list, S_list -> S Semicolon
+                    // 语句与分号的值不入栈
+                }
+                case 4 -> {//S -> D id
+                    valueStack.pop();//id
+                    valueStack.pop();//D
+                    finishStatement();
+                }
                 default -> {
                     for (int i = 0; i < production.body().size(); i++) {
                         valueStack.pop();
@@ -0,0 +1,406 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.IncrementalLexer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 增量语法分析器, 与 {@link IncrementalLexer} 配合使用
+ * <br>
+ * 一条语句 (以分号结尾的一段词法单元) 的分析只取决于它的词法单元与它开始时栈顶的状态: 语句内的规约不会弹出语句开始时的状态,
+ * 而右递归的 S_list 的规约都发生在输入结束时. 因此该类按语句缓存上一次分析的移入与规约事件 (移入的词法单元以语句内的相对下标记录),
+ * 以及语句结束时留在栈上的两个状态. 源程序被编辑后, 只从第一个发生变化的词法单元所在的语句开始重新分析, 直到越过编辑的区域,
+ * 并且某条语句的开头与原来的某条语句对齐且开始状态相同为止, 再把新分析的语句替换进缓存, 其后的语句直接沿用缓存的事件.
+ * 输入结束时的 S_list 规约与接受每次重新计算.
+ * <br>
+ * 最后按顺序把所有事件通知给 SyntaxAnalyzer 上注册的观察者, 观察者看到的事件及其状态与对整个程序执行 {@link SyntaxAnalyzer#run()} 时完全相同,
+ * 只是驱动程序不必重新查表. 某条语句不能这样独立地分析 (例如有语法错误) 时, 丢弃缓存, 改为由 SyntaxAnalyzer 完整地分析一遍, 由它报告错误.
+ */
+public class IncrementalParser {
+    /**
+     * @param analyzer 已经加载了分析表并注册了观察者的语法分析器, 事件通知给它的观察者
+     */
+    public IncrementalParser(SyntaxAnalyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * 完整地分析整个词法单元序列, 并建立各语句的缓存
+     *
+     * @param tokens 以 EOF 结尾的词法单元序列, 例如 {@link IncrementalLexer#getTokens()}
+     */
+    public void parse(List<Token> tokens) {
+        lrTable = analyzer.getLRTable();
+        sync = lrTable.terminalOrdinal(TokenKind.fromString("Semicolon"));
+        cache.clear();
+        reparsedCount = 0;
+        final var tailStart = parseStatements(tokens, 0, lrTable.initState(), cache, -1, 0);
+        if (tailStart < 0) {
+            fallback(tokens);
+            return;
+        }
+        cache.tokenStarts[cache.count] = tailStart;
+        cacheValid = true;
+        if (!notifyAll(tokens)) {
+            fallback(tokens);
+        }
+    }
+
+    /**
+     * 在词法单元序列被编辑后重新分析, 只重新分析词法单元发生变化的语句
+     *
+     * @param tokens 编辑后的词法单元序列
+     * @param delta  本次编辑引起的词法单元序列的变化, 即 {@link IncrementalLexer#applyEdit} 的返回值
+     */
+    public void reparse(List<Token> tokens, IncrementalLexer.TokenDelta delta) {
+        if (!cacheValid || lrTable != analyzer.getLRTable()) {
+            parse(tokens);
+            return;
+        }
+
+        // 第一个发生变化的词法单元所在的语句之前的语句都不受影响
+        final var first = cache.statementAt(delta.firstIndex());
+        final var begin = first == 0 ? lrTable.initState() : cache.endStates[first - 1];
+        final var editedEnd = delta.firstIndex() + delta.insertedTokens().size();
+        final var shift = delta.insertedTokens().size() - delta.removedCount();
+
+        // 新分析的语句先放在 pending 中, 原有的缓存保持不变以便对齐
+        pending.clear();
+        reparsedCount = 0;
+        resume = -1;
+        final var stop = parseStatements(tokens, cache.tokenStarts[first], begin, pending, editedEnd, shift);
+        if (stop < 0) {
+            fallback(tokens);
+            return;
+        }
+        if (resume >= 0) {
+            // 对齐时其后语句与最后一个分号之后的下标都随之平移
+            cache.replace(first, resume, pending, shift);
+        } else {
+            cache.replace(first, cache.count, pending, shift);
+            cache.tokenStarts[cache.count] = stop;
+        }
+        if (!notifyAll(tokens)) {
+            fallback(tokens);
+        }
+    }
+
+    /**
+     * @return 上一次 parse 或 reparse 中实际分析的语句数
+     */
+    public int getReparsedCount() {
+        return reparsedCount;
+    }
+
+    //==================== 以下为逐语句的分析 ==============================//
+
+    /**
+     * 从 from 开始逐条分析语句并追加到 target, 直到没有更多的分号; 若 editedEnd 不为负,
+     * 越过编辑区域后与原有的某条语句对齐时也停下, 并把该语句的序号记在 resume 中
+     *
+     * @param editedEnd 新序列中编辑区域之后的第一个下标, 此后的词法单元与原序列中下标减去 shift 处的相同; 完整分析时为 -1
+     * @param shift     编辑引起的词法单元个数的变化
+     * @return 停下时的下标: 对齐时为对齐的位置, 否则为最后一个分号之后的下标; 某条语句分析失败时返回 -1
+     */
+    private int parseStatements(List<Token> tokens, int from, int state, StatementCache target, int editedEnd, int shift) {
+        var start = from;
+        var current = state;
+        while (true) {
+            if (editedEnd >= 0 && start >= editedEnd) {
+                final var aligned = cache.find(start - shift, current);
+                if (aligned >= 0) {
+                    resume = aligned;
+                    return start;
+                }
+            }
+
+            var end = start;
+            while (end < tokens.size() && terminalOf(tokens.get(end)) != sync) {
+                end++;
+            }
+            if (end == tokens.size()) {
+                // 最后一个分号之后的部分留给 notifyAll
+                return start;
+            }
+            if (!parseStatement(tokens, start, end + 1, current, target)) {
+                return -1;
+            }
+            reparsedCount++;
+            current = target.endStates[target.count - 1];
+            start = end + 1;
+        }
+    }
+
+    /**
+     * 从 state 开始分析 [from, to) 中的一条语句, to 之前的词法单元是分号. 成功时追加到 target
+     */
+    private boolean parseStatement(List<Token> tokens, int from, int to, int state, StatementCache target) {
+        var size = push(0, state);
+        final var firstEvent = target.eventCount;
+        for (int index = from; index < to; ) {
+            final var top = stack[size - 1];
+            final var action = lrTable.action(top, terminalOf(tokens.get(index)));
+            switch (CompiledLRTable.actionKind(action)) {
+                case CompiledLRTable.SHIFT -> {
+                    target.addEvent(top << 1, index - from);
+                    index++;
+                    size = push(size, CompiledLRTable.actionOperand(action));
+                }
+                case CompiledLRTable.REDUCE -> {
+                    final var production = CompiledLRTable.actionOperand(action);
+                    target.addEvent(top << 1 | 1, production);
+                    size -= lrTable.productionLength(production);
+                    if (size < 1) {
+                        // 需要语句开始之前的状态, 不能独立分析
+                        return false;
+                    }
+                    size = push(size, lrTable.gotoState(stack[size - 1], lrTable.productionHead(production)));
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+        // 分号移入之后栈必须恰好为 [开始状态, S 的 goto, 分号之后的状态]
+        if (size != 3) {
+            return false;
+        }
+        target.addStatement(from, state, stack[1], stack[2], firstEvent);
+        return true;
+    }
+
+    private int push(int size, int state) {
+        if (size == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[size] = state;
+        return size + 1;
+    }
+
+    private int terminalOf(Token token) {
+        return lrTable.terminalOrdinal(token.getKind());
+    }
+
+    /**
+     * 按语句存放的分析结果
+     * <br>
+     * 每条语句记录开始的词法单元下标, 开始状态, 留在栈上的两个状态以及事件的范围; tokenStarts 与 eventStarts 多一项,
+     * 分别为最后一个分号之后的下标与事件总数. 每个事件占两个 int, 格式与 ParseEventLog 相同, 但移入记录的是语句内的相对下标.
+     */
+    private static final class StatementCache {
+        void clear() {
+            count = 0;
+            eventCount = 0;
+            eventStarts[0] = 0;
+        }
+
+        void addEvent(int first, int second) {
+            ensureEventCapacity(eventCount + 1);
+            events[2 * eventCount] = first;
+            events[2 * eventCount + 1] = second;
+            eventCount++;
+        }
+
+        void addStatement(int tokenStart, int startState, int gotoState, int endState, int firstEvent) {
+            ensureStatementCapacity(count + 2);
+            tokenStarts[count] = tokenStart;
+            startStates[count] = startState;
+            gotoStates[count] = gotoState;
+            endStates[count] = endState;
+            eventStarts[count] = firstEvent;
+            eventStarts[count + 1] = eventCount;
+            count++;
+        }
+
+        /**
+         * @return 开始下标不大于 index 的最后一条语句; index 位于最后一个分号之后时为语句数
+         */
+        int statementAt(int index) {
+            var lo = 0;
+            var hi = count;
+            while (lo < hi) {
+                final var mid = (lo + hi + 1) >>> 1;
+                if (tokenStarts[mid] <= index) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * @param position 词法单元下标
+         * @param state    开始状态
+         * @return 从该下标开始且开始状态相同的语句; 该下标是最后一个分号之后的位置时为语句数; 没有时为 -1
+         */
+        int find(int position, int state) {
+            final var index = Arrays.binarySearch(tokenStarts, 0, count + 1, position);
+            if (index < 0) {
+                return -1;
+            }
+            return index == count || startStates[index] == state ? index : -1;
+        }
+
+        /**
+         * 用 replacement 中的语句替换 [from, to) 中的语句, 其后语句的词法单元下标平移 shift. 只移动其后的部分, 不重新分配数组
+         */
+        void replace(int from, int to, StatementCache replacement, int shift) {
+            final var statementDelta = replacement.count - (to - from);
+            final var eventFrom = eventStarts[from];
+            final var eventTo = eventStarts[to];
+            final var eventDelta = replacement.eventCount - (eventTo - eventFrom);
+            ensureStatementCapacity(count + statementDelta + 1);
+            ensureEventCapacity(eventCount + eventDelta);
+
+            // 移动其后的语句 (包括最后一个分号之后的一项) 与事件
+            final var moved = count - to;
+            System.arraycopy(tokenStarts, to, tokenStarts, to + statementDelta, moved + 1);
+            System.arraycopy(eventStarts, to, eventStarts, to + statementDelta, moved + 1);
+            System.arraycopy(startStates, to, startStates, to + statementDelta, moved);
+            System.arraycopy(gotoStates, to, gotoStates, to + statementDelta, moved);
+            System.arraycopy(endStates, to, endStates, to + statementDelta, moved);
+            System.arraycopy(events, 2 * eventTo, events, 2 * (eventTo + eventDelta), 2 * (eventCount - eventTo));
+            if (shift != 0 || eventDelta != 0) {
+                for (int i = to + statementDelta; i <= count + statementDelta; i++) {
+                    tokenStarts[i] += shift;
+                    eventStarts[i] += eventDelta;
+                }
+            }
+
+            // 放入新的语句
+            System.arraycopy(replacement.tokenStarts, 0, tokenStarts, from, replacement.count);
+            System.arraycopy(replacement.startStates, 0, startStates, from, replacement.count);
+            System.arraycopy(replacement.gotoStates, 0, gotoStates, from, replacement.count);
+            System.arraycopy(replacement.endStates, 0, endStates, from, replacement.count);
+            for (int i = 0; i < replacement.count; i++) {
+                eventStarts[from + i] = replacement.eventStarts[i] + eventFrom;
+            }
+            System.arraycopy(replacement.events, 0, events, 2 * eventFrom, 2 * replacement.eventCount);
+
+            count += statementDelta;
+            eventCount += eventDelta;
+        }
+
+        private void ensureStatementCapacity(int capacity) {
+            if (capacity > tokenStarts.length) {
+                final var newCapacity = Math.max(capacity, tokenStarts.length * 2);
+                tokenStarts = Arrays.copyOf(tokenStarts, newCapacity);
+                startStates = Arrays.copyOf(startStates, newCapacity);
+                gotoStates = Arrays.copyOf(gotoStates, newCapacity);
+                endStates = Arrays.copyOf(endStates, newCapacity);
+                eventStarts = Arrays.copyOf(eventStarts, newCapacity);
+            }
+        }
+
+        private void ensureEventCapacity(int capacity) {
+            if (2 * capacity > events.length) {
+                events = Arrays.copyOf(events, Math.max(2 * capacity, events.length * 2));
+            }
+        }
+
+        private int count = 0;
+        private int[] tokenStarts = new int[64];
+        private int[] startStates = new int[64];
+        private int[] gotoStates = new int[64];
+        private int[] endStates = new int[64];
+        private int[] eventStarts = new int[64];
+        private int eventCount = 0;
+        private int[] events = new int[1024];
+    }
+
+    //==================== 以下为通知观察者 ==============================//
+
+    /**
+     * 分析最后一个分号之后的部分直到接受, 成功后按顺序通知所有事件
+     *
+     * @return 是否成功接受
+     */
+    private boolean notifyAll(List<Token> tokens) {
+        // 状态栈为 [初始状态, 各语句留下的两个状态...], 其上继续分析最后一个分号之后的部分
+        var size = push(0, lrTable.initState());
+        for (int statement = 0; statement < cache.count; statement++) {
+            size = push(size, cache.gotoStates[statement]);
+            size = push(size, cache.endStates[statement]);
+        }
+        tail.clear();
+        var index = cache.tokenStarts[cache.count];
+        var acceptState = -1;
+        while (acceptState < 0 && index < tokens.size()) {
+            final var top = stack[size - 1];
+            final var action = lrTable.action(top, terminalOf(tokens.get(index)));
+            switch (CompiledLRTable.actionKind(action)) {
+                case CompiledLRTable.SHIFT -> {
+                    tail.addShift(top, index++);
+                    size = push(size, CompiledLRTable.actionOperand(action));
+                }
+                case CompiledLRTable.REDUCE -> {
+                    final var production = CompiledLRTable.actionOperand(action);
+                    tail.addReduce(top, production);
+                    size -= lrTable.productionLength(production);
+                    if (size < 1) {
+                        return false;
+                    }
+                    size = push(size, lrTable.gotoState(stack[size - 1], lrTable.productionHead(production)));
+                }
+                case CompiledLRTable.ACCEPT -> acceptState = top;
+                default -> {
+                    return false;
+                }
+            }
+        }
+        if (acceptState < 0) {
+            return false;
+        }
+
+        final var events = cache.events;
+        for (int statement = 0; statement < cache.count; statement++) {
+            final var base = cache.tokenStarts[statement];
+            for (int event = cache.eventStarts[statement]; event < cache.eventStarts[statement + 1]; event++) {
+                final var status = lrTable.status(events[2 * event] >>> 1);
+                if ((events[2 * event] & 1) == 0) {
+                    analyzer.callWhenInShift(status, tokens.get(base + events[2 * event + 1]));
+                } else {
+                    analyzer.callWhenInReduce(status, lrTable.production(events[2 * event + 1]));
+                }
+            }
+        }
+        for (int event = 0; event < tail.size(); event++) {
+            final var status = lrTable.status(tail.state(event));
+            if (tail.isShift(event)) {
+                analyzer.callWhenInShift(status, tokens.get(tail.operand(event)));
+            } else {
+                analyzer.callWhenInReduce(status, lrTable.production(tail.operand(event)));
+            }
+        }
+        analyzer.callWhenInAccept(lrTable.status(acceptState));
+        return true;
+    }
+
+    /**
+     * 丢弃缓存, 由 SyntaxAnalyzer 完整地分析
+     */
+    private void fallback(List<Token> tokens) {
+        cacheValid = false;
+        analyzer.loadTokens(tokens);
+        analyzer.run();
+    }
+
+    private final SyntaxAnalyzer analyzer;
+    private CompiledLRTable lrTable = null;
+    private int sync = -1;
+    private int[] stack = new int[64];
+    // 上一次分析的结果, 以及重新分析时新分析的语句
+    private final StatementCache cache = new StatementCache();
+    private final StatementCache pending = new StatementCache();
+    private boolean cacheValid = false;
+    // 重新分析时与之对齐的原有语句, 它之前从第一个发生变化的语句开始的原有语句被替换; 没有对齐时为 -1
+    private int resume = -1;
+    // 最后一个分号之后的部分的事件, 每次重新计算
+    private final ParseEventLog tail = new ParseEventLog();
+    private int reparsedCount = 0;
+}
@@ -0,0 +1,299 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.NotImplementedException;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+
+/**
+ * 按 {@link ParserOptions} 组合各种分析策略的 LR 驱动程序
+ * <br>
+ * 默认的策略由 {@link SyntaxAnalyzer#run()} 中的循环完成; 选择了其他策略时, SyntaxAnalyzer 改由该类分析.
+ * 该类同样解释编译后的分析表, 维护 int 数组的状态栈, 并通过 SyntaxAnalyzer 通知观察者. 各策略分别由以下的类实现,
+ * 未选择的策略对应的对象为 null:
+ * <ul>
+ *     <li>{@link GeneratedParser}: 代替该类的循环, 通过 peekTerminal, shift, reduce 与 accept 读取词法单元并通知观察者</li>
+ *     <li>{@link PanicModeRecovery}: 出错时记录错误并恢复, 继续分析</li>
+ *     <li>{@link ParallelStatementParser}: 在循环之前按语句分块并行分析尽可能多的语句</li>
+ *     <li>{@link StatementFolding}: 折叠状态栈上每条语句留下的相同的状态</li>
+ *     <li>{@link ObserverFanOut}: 记录事件, 接受时并发地回放给各观察者</li>
+ * </ul>
+ * 策略之间的限制由 ParserOptions 在组合时检查, 因此这里不必再判断某个策略是否与其他策略冲突.
+ */
+final class LRDriver {
+    LRDriver(SyntaxAnalyzer analyzer, CompiledLRTable lrTable, ParserOptions options) {
+        this.analyzer = analyzer;
+        this.lrTable = lrTable;
+        this.generatedParser = options.generatedParser();
+        this.recovery = options.errorRecovery() ? new PanicModeRecovery(this) : null;
+        this.parallel = options.parallelism() > 1 ? new ParallelStatementParser(this, options.parallelism()) : null;
+        this.folding = options.statementStreaming() ? new StatementFolding(stack) : null;
+        this.fanOut = options.observerThreads() > 1 ? new ObserverFanOut(analyzer, lrTable, options.observerThreads()) : null;
+    }
+
+    void run() {
+        tokens = analyzer.tokens();
+        if ((parallel != null || fanOut != null) && !tokens.randomAccess()) {
+            throw new RuntimeException("Parallel parsing and observer threads need a TokenBuffer or a random-access token list");
+        }
+        if (fanOut == null) {
+            drive();
+            return;
+        }
+
+        fanOut.start(tokens);
+        try {
+            drive();
+        } catch (RuntimeException e) {
+            // 没有接受 (出错) 时, 同样把已记录的事件交给观察者; 观察者在回放中抛出的异常不能掩盖语法错误本身
+            try {
+                fanOut.finish(-1);
+            } catch (RuntimeException replayFailure) {
+                e.addSuppressed(replayFailure);
+            }
+            throw e;
+        }
+        fanOut.finish(-1);
+    }
+
+    private void drive() {
+        analyzer.resumeObservers();
+        if (generatedParser) {
+            if (generated == null) {
+                generated = ParserCodeGenerator.load(lrTable);
+            }
+            generated.parse(this);
+            return;
+        }
+
+        //初始化状态栈
+        stack.clear();
+        stack.push(lrTable.initState());
+        if (folding != null) {
+            folding.reset();
+        }
+        if (recovery != null) {
+            recovery.reset();
+        }
+        if (parallel != null) {
+            // 并行分析尽可能多的完整语句, 剩下的部分由下面的循环继续
+            parallel.parse();
+        }
+        while (tokens.peekKind() != null) {
+            int currentState = stack.top();
+            int action = lrTable.action(currentState, lrTable.terminalOrdinal(tokens.peekKind()));
+            switch (CompiledLRTable.actionKind(action)) {
+                case CompiledLRTable.SHIFT:
+                    //移入
+                    shiftTo(currentState, CompiledLRTable.actionOperand(action));
+                    break;
+                case CompiledLRTable.REDUCE:
+                    //归约
+                    reduceBy(currentState, CompiledLRTable.actionOperand(action));
+                    break;
+                case CompiledLRTable.ACCEPT:
+                    //接受
+                    if (recovery != null && recovery.hasErrors()) {
+                        throw recovery.exception();
+                    }
+                    accept(currentState);
+                    return;
+                default:
+                    if (recovery == null) {
+                        throw new RuntimeException("Syntax error");
+                    }
+                    if (!recovery.recover(currentState)) {
+                        throw recovery.exception();
+                    }
+                    break;
+            }
+        }
+
+        if (recovery != null && recovery.hasErrors()) {
+            throw recovery.exception();
+        }
+        throw new NotImplementedException();
+    }
+
+    /**
+     * 移入下一个词法单元并压入新状态
+     *
+     * @param currentState 当前状态
+     * @param target       移入后的状态
+     */
+    void shiftTo(int currentState, int target) {
+        notifyShift(currentState);
+        tokens.poll();
+        stack.push(target);
+        foldStatement();
+    }
+
+    /**
+     * 按产生式规约, 弹出产生式体对应的状态并压入 goto 的状态
+     *
+     * @param currentState    当前状态
+     * @param productionIndex 产生式编号
+     */
+    void reduceBy(int currentState, int productionIndex) {
+        notifyReduce(currentState, productionIndex);
+        int bodyLength = lrTable.productionLength(productionIndex);
+        if (folding != null) {
+            folding.unfold(bodyLength);
+        }
+        stack.pop(bodyLength);
+        stack.push(lrTable.gotoState(stack.top(), lrTable.productionHead(productionIndex)));
+    }
+
+    /**
+     * 逐语句流式分析时, 若栈顶是又一条语句留下的状态, 则把它们折叠
+     */
+    void foldStatement() {
+        if (folding != null) {
+            folding.fold();
+        }
+    }
+
+    /**
+     * 关闭各策略持有的线程池, SyntaxAnalyzer 丢弃该驱动程序时调用
+     */
+    void close() {
+        if (parallel != null) {
+            parallel.close();
+        }
+        if (fanOut != null) {
+            fanOut.close();
+        }
+    }
+
+    /**
+     * 按顺序把记录的事件通知给观察者, 或追加到并发通知观察者的记录中
+     */
+    void replay(ParseEventLog log) {
+        if (fanOut != null && fanOut.recording()) {
+            fanOut.log().addAll(log);
+            return;
+        }
+        for (int event = 0; event < log.size(); event++) {
+            final var status = lrTable.status(log.state(event));
+            if (log.isShift(event)) {
+                analyzer.callWhenInShift(status, tokens.tokenAt(log.operand(event)));
+            } else {
+                analyzer.callWhenInReduce(status, lrTable.production(log.operand(event)));
+            }
+        }
+    }
+
+    /**
+     * 出错后不再通知观察者, 下一次 run 时恢复. 已记录而尚未回放的事件先回放
+     */
+    void suspendObservers() {
+        if (fanOut != null && fanOut.recording()) {
+            fanOut.finish(-1);
+        }
+        analyzer.suspendObservers();
+    }
+
+    //==================== 以下为通知或记录事件 ==============================//
+
+    /**
+     * 移入下一个词法单元时通知观察者, 或记录该事件
+     *
+     * @param state 当前状态编号
+     */
+    private void notifyShift(int state) {
+        if (fanOut != null && fanOut.recording()) {
+            fanOut.log().addShift(state, tokens.index());
+        } else if (analyzer.hasShiftObservers()) {
+            analyzer.callWhenInShift(lrTable.status(state), tokens.peekToken());
+        }
+    }
+
+    /**
+     * 规约时通知观察者, 或记录该事件
+     *
+     * @param state      当前状态编号
+     * @param production 产生式编号
+     */
+    private void notifyReduce(int state, int production) {
+        if (fanOut != null && fanOut.recording()) {
+            fanOut.log().addReduce(state, production);
+        } else {
+            analyzer.callWhenInReduce(lrTable.status(state), lrTable.production(production));
+        }
+    }
+
+    //==================== 以下为生成的解析器使用的接口 ==============================//
+
+    /**
+     * @return 下一个尚未被移入的词法单元对应的终结符序号; 没有更多词法单元时返回 -1
+     */
+    int peekTerminal() {
+        final var kind = tokens.peekKind();
+        return kind == null ? -1 : lrTable.terminalOrdinal(kind);
+    }
+
+    /**
+     * 移入下一个词法单元并通知观察者, 不改变该类的状态栈
+     *
+     * @param state 当前状态编号
+     */
+    void shift(int state) {
+        notifyShift(state);
+        tokens.poll();
+    }
+
+    /**
+     * 通知观察者规约, 不改变该类的状态栈
+     *
+     * @param state      当前状态编号
+     * @param production 产生式编号
+     */
+    void reduce(int state, int production) {
+        notifyReduce(state, production);
+    }
+
+    /**
+     * 通知观察者接受; 若在记录事件, 则把记录的事件连同接受一起并发地回放给各观察者
+     *
+     * @param state 当前状态编号
+     */
+    void accept(int state) {
+        if (fanOut != null && fanOut.recording()) {
+            fanOut.finish(state);
+        } else {
+            analyzer.callWhenInAccept(lrTable.status(state));
+        }
+    }
+
+    //==================== 以下为各策略读取驱动程序状态的接口 ==============================//
+
+    CompiledLRTable lrTable() {
+        return lrTable;
+    }
+
+    TokenCursor tokens() {
+        return tokens;
+    }
+
+    StateStack stack() {
+        return stack;
+    }
+
+    /**
+     * @return 逐语句流式分析的折叠状态; 未启用时为 null
+     */
+    StatementFolding folding() {
+        return folding;
+    }
+
+    private final SyntaxAnalyzer analyzer;
+    private final CompiledLRTable lrTable;
+    private final StateStack stack = new StateStack();
+    private TokenCursor tokens;
+
+    private final boolean generatedParser;
+    // 生成的解析器在第一次 run 时才生成
+    private GeneratedParser generated = null;
+    private final PanicModeRecovery recovery;
+    private final ParallelStatementParser parallel;
+    private final StatementFolding folding;
+    private final ObserverFanOut fanOut;
+}
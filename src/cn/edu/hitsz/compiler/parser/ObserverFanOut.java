@@ -0,0 +1,127 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 并发地通知观察者, 见 {@link ParserOptions#withObserverThreads(int)}
+ * <br>
+ * 驱动程序在分析过程中不直接调用观察者, 而是把移入与规约事件记入 {@link ParseEventLog}
+ * (每个事件两个 int, 移入只记录词法单元的下标, 不构造 Token). 接受时把记录的事件分别回放给每个观察者,
+ * 各观察者在固定大小的线程池中并发地消费, 于是通知观察者所用的时间接近最慢的一个观察者, 而不是所有观察者之和.
+ * <br>
+ * 每个观察者看到的事件及其顺序与直接通知时完全相同, 但不同观察者之间的先后不再确定, 因此观察者之间不能共享可变的状态:
+ * ProductionCollector, SemanticAnalyzer 与 IRGenerator 都只维护自己的状态, 符号表只由 SemanticAnalyzer 修改.
+ * 出错而没有接受时, 同样在停止通知之前回放已记录的事件. 记录整个程序的事件与逐语句流式分析的有界内存相悖, 因此两者不能同时使用.
+ * <br>
+ * 线程池随驱动程序创建, 在各次 run 之间复用, 由 {@link #close()} 关闭. 其工作线程是守护线程, 空闲一段时间后自行退出.
+ */
+final class ObserverFanOut {
+    ObserverFanOut(SyntaxAnalyzer analyzer, CompiledLRTable lrTable, int threads) {
+        this.analyzer = analyzer;
+        this.lrTable = lrTable;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * 关闭线程池, 驱动程序被丢弃时调用
+     */
+    void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * 开始记录事件
+     *
+     * @param tokens 本次分析的词法单元, 回放时按下标读取
+     */
+    void start(TokenCursor tokens) {
+        this.tokens = tokens;
+        events.clear();
+        recording = true;
+    }
+
+    /**
+     * @return 是否正在记录事件; 回放之后不再记录, 之后的事件直接通知观察者
+     */
+    boolean recording() {
+        return recording;
+    }
+
+    /**
+     * @return 记录事件的日志
+     */
+    ParseEventLog log() {
+        return events;
+    }
+
+    /**
+     * 停止记录, 并在线程池中把记录的事件分别回放给每个观察者. 已经停止记录时什么也不做
+     *
+     * @param acceptState 接受时的状态; 没有接受时为 -1
+     */
+    void finish(int acceptState) {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+        final var observers = analyzer.observers();
+        if (observers.isEmpty()) {
+            events.clear();
+            return;
+        }
+
+        RuntimeException failure = null;
+        try {
+            final var tasks = new ArrayList<ForkJoinTask<?>>();
+            for (int i = 0; i < observers.size(); i++) {
+                final var observer = i;
+                tasks.add(pool.submit(() -> replayTo(observer, acceptState)));
+            }
+            // 等待所有观察者结束, 某个观察者抛出的异常在此之后再抛出
+            for (final var task : tasks) {
+                try {
+                    task.join();
+                } catch (RuntimeException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+        } finally {
+            events.clear();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 按顺序把记录的事件中该观察者关心的部分通知给它
+     */
+    private void replayTo(int observer, int acceptState) {
+        final var listener = analyzer.observers().get(observer);
+        final var subscription = analyzer.subscriptions().get(observer);
+        for (int event = 0; event < events.size(); event++) {
+            final var operand = events.operand(event);
+            if (events.isShift(event)) {
+                if (subscription.shift()) {
+                    listener.whenShift(lrTable.status(events.state(event)), tokens.tokenAt(operand));
+                }
+            } else if (subscription.reduce(operand)) {
+                listener.whenReduce(lrTable.status(events.state(event)), lrTable.production(operand));
+            }
+        }
+        if (acceptState >= 0 && subscription.accept()) {
+            listener.whenAccept(lrTable.status(acceptState));
+        }
+    }
+
+    private final SyntaxAnalyzer analyzer;
+    private final CompiledLRTable lrTable;
+    private final ForkJoinPool pool;
+    private TokenCursor tokens;
+    private boolean recording = false;
+    private final ParseEventLog events = new ParseEventLog();
+}
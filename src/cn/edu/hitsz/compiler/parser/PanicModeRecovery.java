@@ -0,0 +1,102 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 恐慌模式 (panic mode) 的错误恢复, 见 {@link ParserOptions#withErrorRecovery()}
+ * <br>
+ * 未启用时遇到第一个语法错误就抛出异常. 启用后, 遇到语法错误时记录出错的位置, 弹出状态直到某个状态能够移入分号
+ * (或者在某个非终结符的 goto 之后能够移入分号, 相当于把出错的部分当作已经规约出的语句), 再跳过输入直到下一个分号, 然后继续分析.
+ * 这样一次运行就能报告所有的语法错误: 分析结束后若有错误, 抛出的异常中列出全部错误.
+ * <br>
+ * 出错之后观察者看到的动作序列已经不对应任何合法的程序, 因此第一个错误之后不再通知任何观察者 (包括 IR 生成),
+ * 以免为一个不能通过编译的程序做无用功.
+ */
+final class PanicModeRecovery {
+    PanicModeRecovery(LRDriver driver) {
+        this.driver = driver;
+        this.semicolon = TokenKind.fromString("Semicolon");
+    }
+
+    void reset() {
+        syntaxErrors.clear();
+    }
+
+    /**
+     * @return 本次 run 中是否已经记录了语法错误
+     */
+    boolean hasErrors() {
+        return !syntaxErrors.isEmpty();
+    }
+
+    /**
+     * 记录语法错误并进行恢复
+     *
+     * @param currentState 出错时栈顶的状态
+     * @return 是否恢复成功; 找不到能移入分号的状态, 或出错之后的输入中已经没有分号时失败
+     */
+    boolean recover(int currentState) {
+        final var lrTable = driver.lrTable();
+        final var tokens = driver.tokens();
+        final var stack = driver.stack();
+        final var folding = driver.folding();
+        syntaxErrors.add(new SyntaxError(tokens.index(), tokens.peekToken(), currentState));
+        driver.suspendObservers();
+
+        final var sync = lrTable.terminalOrdinal(semicolon);
+        if (folding != null) {
+            folding.unfoldForRecovery();
+        }
+        for (int depth = stack.size() - 1; depth >= 0; depth--) {
+            final var state = stack.get(depth);
+            var target = lrTable.canShift(state, sync) ? state : CompiledLRTable.NO_GOTO;
+            var nonTerminal = -1;
+            for (int i = 0; target == CompiledLRTable.NO_GOTO && i < lrTable.nonTerminalCount(); i++) {
+                final var to = lrTable.exactGotoState(state, i);
+                if (to != CompiledLRTable.NO_GOTO && lrTable.canShift(to, sync)) {
+                    target = to;
+                    nonTerminal = i;
+                }
+            }
+            if (target == CompiledLRTable.NO_GOTO) {
+                continue;
+            }
+
+            // 弹出该状态之上的所有状态, 必要时压入 goto 之后的状态
+            stack.truncate(depth + 1);
+            if (folding != null) {
+                folding.afterTruncate();
+            }
+            if (nonTerminal >= 0) {
+                stack.push(target);
+            }
+
+            // 跳过输入直到下一个分号, 该分号随后被正常移入
+            while (tokens.peekKind() != null && !tokens.peekKind().equals(semicolon)) {
+                tokens.poll();
+            }
+            return tokens.peekKind() != null;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return 列出本次 run 中所有语法错误的异常
+     */
+    RuntimeException exception() {
+        final var message = new StringBuilder("Syntax error: %d error(s)".formatted(syntaxErrors.size()));
+        for (final var error : syntaxErrors) {
+            message.append("\n    ").append(error);
+        }
+        return new RuntimeException(message.toString());
+    }
+
+    private final LRDriver driver;
+    private final TokenKind semicolon;
+    private final List<SyntaxError> syntaxErrors = new ArrayList<>();
+}
@@ -0,0 +1,253 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 按语句分块的并行分析, 见 {@link ParserOptions#withParallelism(int)}
+ * <br>
+ * 驱动程序先顺序分析前两条语句, 确认每条语句都从同一个状态开始, 并在分号移入后回到该状态;
+ * 之后在顶层的分号处把其余的词法单元切成若干块, 每块由一个工作线程从该状态开始独立分析, 只把移入与规约事件记入 {@link ParseEventLog}.
+ * 主线程按块的顺序把记录的事件回放给观察者, 并为每条语句在状态栈上补上它留下的状态, 最后由驱动程序通常的循环分析剩下的部分,
+ * 包括结尾处 {@code S_list} 的规约与接受. 因此观察者看到的事件及其状态与顺序分析时完全相同.
+ * <br>
+ * 某一块分析失败 (语法错误, 或规约弹出了语句开始的状态) 时, 丢弃该块及之后各块的结果, 由通常的循环从该块的开头继续,
+ * 错误的报告与恢复与顺序分析时一致. 此时仍在分析的块在下一个分号处停下, 顺序分析要等它们都结束之后才开始.
+ * <br>
+ * 线程池随驱动程序创建, 在各次 run 之间复用, 由 {@link #close()} 关闭. 其工作线程是守护线程, 空闲一段时间后自行退出.
+ */
+final class ParallelStatementParser {
+    // 每个线程平均分到的块数, 块数多于线程数以平衡各块的分析时间
+    private static final int CHUNKS_PER_THREAD = 4;
+    // 每块至少包含的语句数, 语句太少时分块得不偿失
+    private static final int MIN_CHUNK_STATEMENTS = 1024;
+
+    ParallelStatementParser(LRDriver driver, int parallelism) {
+        this.driver = driver;
+        this.lrTable = driver.lrTable();
+        this.parallelism = parallelism;
+        this.sync = lrTable.terminalOrdinal(TokenKind.fromString("Semicolon"));
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * 从驱动程序当前的位置起并行分析尽可能多的完整语句. 返回时状态栈与词法单元的位置与顺序分析到同一位置时完全相同
+     */
+    void parse() {
+        final var stack = driver.stack();
+        final var folding = driver.folding();
+        final var tokens = driver.tokens();
+
+        // 顺序分析前两条语句: 第一条之后栈为 [初始状态, a, q], 第二条之后必须为 [初始状态, a, q, b, q],
+        // 此后每条语句都从 q 开始, 并在栈上留下 b 与 q
+        if (!parseStatement() || stack.size() != 3) {
+            return;
+        }
+        final var statementStart = stack.get(2);
+        if (!parseStatement() || logicalSize(folding, stack) != 5 || stack.top() != statementStart) {
+            return;
+        }
+        final var statementState = folding != null && folding.repeatCount() > 0 ? folding.repeatLow() : stack.get(3);
+
+        // 在分号处切块, 每块以分号结尾; 最后一个分号之后的部分留给顺序分析
+        final var chunks = splitStatements(tokens);
+        if (chunks.size() < 2) {
+            return;
+        }
+
+        // 最多同时有 2 * parallelism 块在分析或等待回放, 以限制事件记录占用的内存
+        final var pending = new ArrayDeque<ForkJoinTask<ParseEventLog>>();
+        final var cancelled = new AtomicBoolean();
+        try {
+            var submitted = 0;
+            for (final var chunk : chunks) {
+                while (submitted < chunks.size() && pending.size() < 2 * parallelism) {
+                    final var next = chunks.get(submitted++);
+                    pending.add(pool.submit(
+                        () -> parseChunk(tokens, next[0], next[1], statementStart, statementState, cancelled)));
+                }
+
+                final var log = joinChunk(pending.poll());
+                if (log == null) {
+                    // 从这一块的开头起交给顺序分析, 由它报告错误
+                    return;
+                }
+                driver.replay(log);
+                for (int statement = 0; statement < chunk[2]; statement++) {
+                    stack.push(statementState);
+                    stack.push(statementStart);
+                    driver.foldStatement();
+                }
+                tokens.seek(chunk[1]);
+            }
+        } finally {
+            // 不论是正常结束, 某一块失败还是观察者抛出异常, 都让剩下的块尽快停下, 并等它们结束,
+            // 以免它们与之后的顺序分析或下一次 run 争用线程池
+            cancelled.set(true);
+            for (final var task : pending) {
+                task.quietlyJoin();
+            }
+        }
+    }
+
+    /**
+     * 关闭线程池, 驱动程序被丢弃时调用
+     */
+    void close() {
+        pool.shutdown();
+    }
+
+    private static int logicalSize(StatementFolding folding, StateStack stack) {
+        return folding == null ? stack.size() : folding.logicalSize();
+    }
+
+    /**
+     * 顺序分析到下一个分号被移入为止
+     *
+     * @return 是否移入了分号; 遇到接受, 错误或输入结束时返回 false, 此时尚未对该动作通知观察者
+     */
+    private boolean parseStatement() {
+        while (true) {
+            final var terminal = driver.peekTerminal();
+            if (terminal < 0) {
+                return false;
+            }
+            final var state = driver.stack().top();
+            final var action = lrTable.action(state, terminal);
+            switch (CompiledLRTable.actionKind(action)) {
+                case CompiledLRTable.SHIFT:
+                    driver.shiftTo(state, CompiledLRTable.actionOperand(action));
+                    if (terminal == sync) {
+                        return true;
+                    }
+                    break;
+                case CompiledLRTable.REDUCE:
+                    driver.reduceBy(state, CompiledLRTable.actionOperand(action));
+                    break;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * 从当前位置开始在分号处切块
+     *
+     * @return 各块的 {起始下标, 结束下标, 语句数}, 结束下标处之前的词法单元是分号
+     */
+    private List<int[]> splitStatements(TokenCursor tokens) {
+        final var count = tokens.size();
+        var total = 0;
+        for (int index = tokens.index(); index < count; index++) {
+            if (terminalAt(tokens, index) == sync) {
+                total++;
+            }
+        }
+        final var chunkCount = parallelism * CHUNKS_PER_THREAD;
+        final var statementsPerChunk = Math.max(MIN_CHUNK_STATEMENTS, (total + chunkCount - 1) / chunkCount);
+
+        final var chunks = new ArrayList<int[]>();
+        var from = tokens.index();
+        var statements = 0;
+        var remaining = total;
+        for (int index = tokens.index(); remaining > 0; index++) {
+            if (terminalAt(tokens, index) != sync) {
+                continue;
+            }
+            statements++;
+            remaining--;
+            if (statements == statementsPerChunk || remaining == 0) {
+                chunks.add(new int[]{from, index + 1, statements});
+                from = index + 1;
+                statements = 0;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 在工作线程中从语句开始的状态分析一块, 不通知观察者, 也不读写驱动程序的状态栈
+     *
+     * @param cancelled 为 true 时在下一个分号处停下; 结果已经不会被使用
+     * @return 记录的事件; 分析失败或被取消时返回 null
+     */
+    private ParseEventLog parseChunk(TokenCursor tokens, int from, int to, int statementStart, int statementState,
+                                     AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            return null;
+        }
+        final var log = new ParseEventLog();
+        var stack = new int[64];
+        var size = 0;
+        stack[size++] = statementStart;
+        var index = from;
+        while (index < to) {
+            final var state = stack[size - 1];
+            final var terminal = terminalAt(tokens, index);
+            final var action = lrTable.action(state, terminal);
+            switch (CompiledLRTable.actionKind(action)) {
+                case CompiledLRTable.SHIFT -> {
+                    final var target = CompiledLRTable.actionOperand(action);
+                    log.addShift(state, index++);
+                    if (terminal == sync) {
+                        // 语句结束: 栈必须恰好为 [q, b], 移入后回到 q; 主线程会在它的状态栈上补上 b 与 q
+                        if (size != 2 || stack[1] != statementState || target != statementStart || cancelled.get()) {
+                            return null;
+                        }
+                        size = 1;
+                        break;
+                    }
+                    if (size == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[size++] = target;
+                }
+                case CompiledLRTable.REDUCE -> {
+                    final var production = CompiledLRTable.actionOperand(action);
+                    log.addReduce(state, production);
+                    size -= lrTable.productionLength(production);
+                    if (size < 1) {
+                        // 需要语句开始之前的状态, 不能在块内独立分析
+                        return null;
+                    }
+                    if (size == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[size] = lrTable.gotoState(stack[size - 1], lrTable.productionHead(production));
+                    size++;
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return size == 1 ? log : null;
+    }
+
+    private ParseEventLog joinChunk(ForkJoinTask<ParseEventLog> task) {
+        try {
+            return task.join();
+        } catch (RuntimeException e) {
+            // 工作线程中的异常同样视为分析失败, 顺序分析到这里时会以同样的方式出错
+            return null;
+        }
+    }
+
+    private int terminalAt(TokenCursor tokens, int index) {
+        return lrTable.terminalOrdinal(tokens.kindAt(index));
+    }
+
+    private final LRDriver driver;
+    private final CompiledLRTable lrTable;
+    private final int parallelism;
+    private final int sync;
+    private final ForkJoinPool pool;
+}
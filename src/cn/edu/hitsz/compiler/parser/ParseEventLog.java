@@ -0,0 +1,92 @@
+package cn.edu.hitsz.compiler.parser;
+
+import java.util.Arrays;
+
+/**
+ * 按顺序记录的移入与规约事件, 用于先分析后通知观察者
+ * <br>
+ * 每个事件占两个 int: 第一个为事件发生时栈顶的状态编号左移一位, 最低位区分移入 (0) 与规约 (1);
+ * 第二个为移入的词法单元在词法单元序列中的下标, 或规约所用产生式的编号. 记录时不构造 Token 或其它任何对象.
+ *
+ * @see ParallelStatementParser
+ * @see ObserverFanOut
+ */
+final class ParseEventLog {
+    /**
+     * @param state      移入前栈顶的状态
+     * @param tokenIndex 移入的词法单元的下标
+     */
+    void addShift(int state, int tokenIndex) {
+        add(state << 1, tokenIndex);
+    }
+
+    /**
+     * @param state      规约前栈顶的状态
+     * @param production 产生式编号
+     */
+    void addReduce(int state, int production) {
+        add(state << 1 | 1, production);
+    }
+
+    /**
+     * 按顺序追加另一份记录中的所有事件
+     *
+     * @param other 另一份记录
+     */
+    void addAll(ParseEventLog other) {
+        if (size + other.size > events.length) {
+            events = Arrays.copyOf(events, Math.max(size + other.size, events.length * 2));
+        }
+        System.arraycopy(other.events, 0, events, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * 清空记录, 保留已分配的数组
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return 事件个数
+     */
+    int size() {
+        return size / 2;
+    }
+
+    /**
+     * @param event 事件的下标
+     * @return 该事件是否为移入
+     */
+    boolean isShift(int event) {
+        return (events[2 * event] & 1) == 0;
+    }
+
+    /**
+     * @param event 事件的下标
+     * @return 事件发生时栈顶的状态
+     */
+    int state(int event) {
+        return events[2 * event] >>> 1;
+    }
+
+    /**
+     * @param event 事件的下标
+     * @return 移入的词法单元的下标, 或规约所用产生式的编号
+     */
+    int operand(int event) {
+        return events[2 * event + 1];
+    }
+
+    private void add(int first, int second) {
+        if (size + 2 > events.length) {
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+        events[size++] = first;
+        events[size++] = second;
+    }
+
+    private int[] events = new int[1024];
+    private int size = 0;
+}
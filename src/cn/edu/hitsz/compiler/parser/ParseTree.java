@@ -0,0 +1,166 @@
+package cn.edu.hitsz.compiler.parser;
+
+import java.util.Arrays;
+
+/**
+ * 以扁平数组存储的语法分析树
+ * <br>
+ * 结点不是对象, 而是从 0 开始的编号; 每个结点的信息分别存放在几个平行的 int 数组中:
+ * 结点类型 (词法单元结点为其 TokenKind 的码点, 产生式结点为 {@link #PRODUCTION_NODE}), 产生式编号, 第一个子结点, 下一个兄弟结点,
+ * 以及词法单元的下标 (词法单元结点为其自身在词法单元序列中的下标, 产生式结点为其覆盖的第一个词法单元的下标).
+ * 每个结点固定占用 20 字节, 不产生任何小对象, 也不需要 GC 跟踪.
+ * <br>
+ * 结点按创建的顺序编号, 即按移入与规约的顺序, 因此子结点的编号总是小于父结点. 清空只需把结点数置零, 数组会被保留,
+ * 同一个 ParseTree 可以在多次编译之间重复使用.
+ * <br>
+ * 树中不保存词法单元本身, 需要时以 {@link #tokenIndex(int)} 到词法单元序列 (如 TokenBuffer) 中读取.
+ *
+ * @see ParseTreeBuilder
+ */
+public final class ParseTree {
+    /**
+     * 产生式结点的结点类型
+     */
+    public static final int PRODUCTION_NODE = Integer.MIN_VALUE;
+
+    /**
+     * 代表没有结点
+     */
+    public static final int NO_NODE = -1;
+
+    /**
+     * 清空树, 保留已分配的数组
+     */
+    public void clear() {
+        size = 0;
+        root = NO_NODE;
+    }
+
+    /**
+     * @return 结点个数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 根结点, 树尚未构造完成时为 {@code NO_NODE}
+     */
+    public int root() {
+        return root;
+    }
+
+    /**
+     * @param node 结点
+     * @return 该结点是否为词法单元结点 (叶结点)
+     */
+    public boolean isToken(int node) {
+        return kinds[node] != PRODUCTION_NODE;
+    }
+
+    /**
+     * @param node 结点
+     * @return 词法单元结点的 TokenKind 码点, 产生式结点为 {@code PRODUCTION_NODE}
+     */
+    public int kind(int node) {
+        return kinds[node];
+    }
+
+    /**
+     * @param node 结点
+     * @return 产生式结点的产生式编号 (即 Production.index()), 词法单元结点为 -1
+     */
+    public int production(int node) {
+        return productions[node];
+    }
+
+    /**
+     * @param node 结点
+     * @return 第一个子结点, 没有时为 {@code NO_NODE}
+     */
+    public int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    /**
+     * @param node 结点
+     * @return 下一个兄弟结点, 没有时为 {@code NO_NODE}
+     */
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    /**
+     * @param node 结点
+     * @return 词法单元结点在词法单元序列中的下标; 产生式结点为其覆盖的第一个词法单元的下标
+     */
+    public int tokenIndex(int node) {
+        return tokenIndices[node];
+    }
+
+    /**
+     * 添加一个词法单元结点
+     *
+     * @param kindCode   TokenKind 的码点
+     * @param tokenIndex 在词法单元序列中的下标
+     * @return 新结点
+     */
+    int addToken(int kindCode, int tokenIndex) {
+        final var node = allocate();
+        kinds[node] = kindCode;
+        productions[node] = -1;
+        firstChildren[node] = NO_NODE;
+        tokenIndices[node] = tokenIndex;
+        return node;
+    }
+
+    /**
+     * 添加一个产生式结点, 以 children[from, to) 依次作为其子结点
+     *
+     * @param production 产生式编号
+     * @param children   存放子结点的数组
+     * @param from       第一个子结点的位置
+     * @param to         最后一个子结点之后的位置
+     * @param tokenIndex 子结点为空时使用的词法单元下标
+     * @return 新结点
+     */
+    int addProduction(int production, int[] children, int from, int to, int tokenIndex) {
+        final var node = allocate();
+        kinds[node] = PRODUCTION_NODE;
+        productions[node] = production;
+        firstChildren[node] = from < to ? children[from] : NO_NODE;
+        tokenIndices[node] = from < to ? tokenIndices[children[from]] : tokenIndex;
+        for (int i = from; i + 1 < to; i++) {
+            nextSiblings[children[i]] = children[i + 1];
+        }
+        return node;
+    }
+
+    /**
+     * @param node 作为根结点的结点
+     */
+    void setRoot(int node) {
+        root = node;
+    }
+
+    private int allocate() {
+        if (size == kinds.length) {
+            final var capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            productions = Arrays.copyOf(productions, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            tokenIndices = Arrays.copyOf(tokenIndices, capacity);
+        }
+        nextSiblings[size] = NO_NODE;
+        return size++;
+    }
+
+    private int size = 0;
+    private int root = NO_NODE;
+    private int[] kinds = new int[1024];
+    private int[] productions = new int[1024];
+    private int[] firstChildren = new int[1024];
+    private int[] nextSiblings = new int[1024];
+    private int[] tokenIndices = new int[1024];
+}
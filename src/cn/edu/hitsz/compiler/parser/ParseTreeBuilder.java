@@ -0,0 +1,84 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.Arrays;
+
+/**
+ * 在语法分析过程中构造语法分析树的观察者
+ * <br>
+ * 移入时为词法单元创建叶结点, 规约时以栈顶的若干结点为子结点创建产生式结点, 接受时以起始产生式创建根结点.
+ * 栈中只存放结点编号, 结点本身存放在 {@link ParseTree} 的数组中, 因此构造过程中不分配任何对象 (数组扩容除外).
+ * 之后的各个遍可以在同一棵树上按任意顺序遍历任意多次, 而不必像 SemanticAnalyzer 与 IRGenerator 那样只能按规约顺序工作.
+ */
+public class ParseTreeBuilder implements ActionObserver {
+    /**
+     * @param tree            存放结点的树, 会被清空; 可以传入上一次编译使用过的树以重复使用其数组
+     * @param beginProduction 起始产生式, 接受时以它创建根结点
+     */
+    public ParseTreeBuilder(ParseTree tree, Production beginProduction) {
+        this.tree = tree;
+        this.beginProduction = beginProduction;
+        reset();
+    }
+
+    /**
+     * 清空树与结点栈, 以便开始新一次的语法分析
+     */
+    public void reset() {
+        tree.clear();
+        stackSize = 0;
+        tokenCount = 0;
+    }
+
+    /**
+     * @return 构造出的树, 语法分析接受之后才完整
+     */
+    public ParseTree getTree() {
+        return tree;
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        push(tree.addToken(currentToken.getKind().getCode(), tokenCount++));
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        reduce(production);
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        reduce(beginProduction);
+        tree.setRoot(stack[--stackSize]);
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // do nothing
+    }
+
+    private void reduce(Production production) {
+        final var length = production.body().size();
+        final var node = tree.addProduction(production.index(), stack, stackSize - length, stackSize, tokenCount);
+        stackSize -= length;
+        push(node);
+    }
+
+    private void push(int node) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[stackSize++] = node;
+    }
+
+    private final ParseTree tree;
+    private final Production beginProduction;
+    private int[] stack = new int[64];
+    private int stackSize = 0;
+    private int tokenCount = 0;
+}
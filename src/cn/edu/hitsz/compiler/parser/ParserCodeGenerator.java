@@ -0,0 +1,230 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 根据 LR 分析表生成专用解析器的代码生成器
+ * <br>
+ * SyntaxAnalyzer 在每一步都要查表再根据动作类型分支; 而对于固定的文法, 分析表本身也是固定的.
+ * 该类把分析表直接翻译为 Java 源代码: 对状态与终结符的分派都是以常量为标签的 switch (编译为 tableswitch),
+ * 移入的目标状态, 规约的产生式长度与 goto 的目标状态都作为常量内联在代码中. 生成的源代码在内存中编译,
+ * 再作为隐藏类 (hidden class) 加载, 不会在文件系统中留下任何文件. 这样 JIT 可以像对待手写的解析器一样优化它.
+ * <br>
+ * 生成的解析器通过 LRDriver 的包内接口读取词法单元并通知观察者, 触发的事件及其顺序与解释执行时完全相同.
+ *
+ * @see GeneratedParser
+ * @see ParserOptions#withGeneratedParser()
+ */
+public final class ParserCodeGenerator {
+    private ParserCodeGenerator() {
+    }
+
+    /**
+     * 生成专用解析器的源代码
+     *
+     * @param table     分析表
+     * @param className 生成的类名, 该类位于 {@code cn.edu.hitsz.compiler.parser} 包中
+     * @return Java 源代码
+     */
+    public static String generateSource(LRTable table, String className) {
+        return generateSource(CompiledLRTable.compile(table), className);
+    }
+
+    /**
+     * 生成专用解析器的源代码
+     *
+     * @param table     编译后的分析表
+     * @param className 生成的类名, 该类位于 {@code cn.edu.hitsz.compiler.parser} 包中
+     * @return Java 源代码
+     */
+    public static String generateSource(CompiledLRTable table, String className) {
+        final var code = new StringBuilder();
+        code.append("package cn.edu.hitsz.compiler.parser;\n\n");
+        code.append("import cn.edu.hitsz.compiler.NotImplementedException;\n\n");
+        code.append("import java.util.Arrays;\n\n");
+        code.append("/**\n * 由 ParserCodeGenerator 根据分析表生成, 不要手动修改\n */\n");
+        code.append("final class ").append(className).append(" implements GeneratedParser {\n");
+
+        code.append("    @Override\n");
+        code.append("    public void parse(LRDriver driver) {\n");
+        code.append("        int[] stack = new int[64];\n");
+        code.append("        int size = 0;\n");
+        code.append("        stack[size++] = ").append(table.initState()).append(";\n");
+        code.append("        int terminal;\n");
+        code.append("        while ((terminal = driver.peekTerminal()) >= 0) {\n");
+        code.append("            final int state = stack[size - 1];\n");
+        code.append("            switch (state) {\n");
+        for (int state = 0; state < table.stateCount(); state++) {
+            generateState(code, table, state);
+        }
+        code.append("                default:\n");
+        code.append("                    throw new RuntimeException(\"Syntax error\");\n");
+        code.append("            }\n");
+        code.append("        }\n\n");
+        code.append("        throw new NotImplementedException();\n");
+        code.append("    }\n");
+
+        for (int nonTerminal = 0; nonTerminal < table.nonTerminalCount(); nonTerminal++) {
+            generateGoto(code, table, nonTerminal);
+        }
+
+        code.append("\n    private static int[] ensureCapacity(int[] stack, int size) {\n");
+        code.append("        return size < stack.length ? stack : Arrays.copyOf(stack, stack.length * 2);\n");
+        code.append("    }\n");
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /**
+     * 生成专用解析器, 在内存中编译后作为隐藏类加载. 需要在 JDK 而非 JRE 上运行
+     *
+     * @param table 编译后的分析表, 须与调用生成的解析器的 LRDriver 所使用的相同
+     * @return 生成的解析器
+     * @throws RuntimeException 当前运行环境没有 Java 编译器, 或生成的代码编译, 加载失败
+     */
+    static GeneratedParser load(CompiledLRTable table) {
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("No Java compiler available, generated parser requires a JDK");
+        }
+
+        final var className = "GeneratedLRParser";
+        final var source = generateSource(table, className);
+        final var sourceFile = new SimpleJavaFileObject(URI.create("string:///" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        // 生成的源代码中只有一个类, 因此只会输出一个 class 文件
+        final var classBytes = new ByteArrayOutputStream();
+        final var standardFileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        final var fileManager = new ForwardingJavaFileManager<>(standardFileManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + name.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return classBytes;
+                    }
+                };
+            }
+        };
+
+        final var diagnostics = new StringWriter();
+        final var options = List.of("-classpath", System.getProperty("java.class.path"), "-nowarn");
+        final var succeeded = compiler.getTask(diagnostics, fileManager, null, options, null, List.of(sourceFile)).call();
+        if (!succeeded) {
+            throw new RuntimeException("Failed to compile generated parser:\n" + diagnostics);
+        }
+
+        try {
+            final var lookup = MethodHandles.lookup().defineHiddenClass(classBytes.toByteArray(), true);
+            final var constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class));
+            return (GeneratedParser) constructor.invoke();
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to load generated parser", e);
+        }
+    }
+
+    /**
+     * 生成一个状态的分派代码: 对终结符的 switch, 动作相同的终结符合并为同一个分支
+     */
+    private static void generateState(StringBuilder code, CompiledLRTable table, int state) {
+        final var terminalsByAction = new LinkedHashMap<Integer, List<Integer>>();
+        for (int terminal = 0; terminal < table.terminalCount(); terminal++) {
+            final var action = table.action(state, terminal);
+            if (CompiledLRTable.actionKind(action) != CompiledLRTable.ERROR) {
+                terminalsByAction.computeIfAbsent(action, key -> new ArrayList<>()).add(terminal);
+            }
+        }
+        if (terminalsByAction.isEmpty()) {
+            return;
+        }
+
+        code.append("                case ").append(state).append(":\n");
+        code.append("                    switch (terminal) {\n");
+        for (final var entry : terminalsByAction.entrySet()) {
+            final var action = entry.getKey();
+            final var terminals = entry.getValue();
+            code.append("                        case ").append(joinLabels(terminals)).append(": // ");
+            code.append(String.join(" ", terminals.stream().map(terminal -> table.terminal(terminal).getIdentifier()).toList()));
+            code.append("\n");
+
+            final var operand = CompiledLRTable.actionOperand(action);
+            switch (CompiledLRTable.actionKind(action)) {
+                case CompiledLRTable.SHIFT -> {
+                    code.append("                            driver.shift(state);\n");
+                    code.append("                            stack = ensureCapacity(stack, size);\n");
+                    code.append("                            stack[size++] = ").append(operand).append(";\n");
+                    code.append("                            continue;\n");
+                }
+                case CompiledLRTable.REDUCE -> {
+                    final var head = table.productionHead(operand);
+                    code.append("                            // ").append(table.production(operand)).append("\n");
+                    code.append("                            driver.reduce(state, ").append(operand).append(");\n");
+                    code.append("                            size -= ").append(table.productionLength(operand)).append(";\n");
+                    code.append("                            stack = ensureCapacity(stack, size);\n");
+                    code.append("                            stack[size] = goto").append(head).append("(stack[size - 1]);\n");
+                    code.append("                            size++;\n");
+                    code.append("                            continue;\n");
+                }
+                default -> {
+                    code.append("                            driver.accept(state);\n");
+                    code.append("                            return;\n");
+                }
+            }
+        }
+        code.append("                        default:\n");
+        code.append("                            throw new RuntimeException(\"Syntax error\");\n");
+        code.append("                    }\n");
+    }
+
+    /**
+     * 生成一个非终结符的 goto 方法, 以状态为参数返回转移到的状态
+     */
+    private static void generateGoto(StringBuilder code, CompiledLRTable table, int nonTerminal) {
+        final Map<Integer, List<Integer>> statesByTarget = new LinkedHashMap<>();
+        for (int state = 0; state < table.stateCount(); state++) {
+            final var target = table.gotoState(state, nonTerminal);
+            if (target != CompiledLRTable.NO_GOTO) {
+                statesByTarget.computeIfAbsent(target, key -> new ArrayList<>()).add(state);
+            }
+        }
+
+        code.append("\n    // goto on ").append(table.nonTerminal(nonTerminal)).append("\n");
+        code.append("    private static int goto").append(nonTerminal).append("(int state) {\n");
+        code.append("        switch (state) {\n");
+        for (final var entry : statesByTarget.entrySet()) {
+            code.append("            case ").append(joinLabels(entry.getValue())).append(":\n");
+            code.append("                return ").append(entry.getKey()).append(";\n");
+        }
+        code.append("            default:\n");
+        code.append("                throw new RuntimeException(\"Syntax error\");\n");
+        code.append("        }\n");
+        code.append("    }\n");
+    }
+
+    private static String joinLabels(List<Integer> labels) {
+        return String.join(", ", labels.stream().map(String::valueOf).toList());
+    }
+}
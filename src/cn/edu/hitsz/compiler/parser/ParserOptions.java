@@ -0,0 +1,170 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+/**
+ * 语法分析驱动程序的分析策略
+ * <br>
+ * {@code new SyntaxAnalyzer(symbolTable)} 以默认的策略解释稠密的分析表. 需要其他策略时, 以该类选择后由 {@link #newAnalyzer(SymbolTable)}
+ * 构造驱动程序, 其余的用法 (注册观察者, 加载词法单元与分析表, run) 不变. 无论选择哪些策略, 观察者看到的事件及其状态与顺序都与默认时相同.
+ * <br>
+ * 该类是不可变的, {@code withXXX} 方法返回新的对象, 例如:
+ * <pre>{@code
+ * ParserOptions.defaults().withErrorRecovery().withParallelism(4).newAnalyzer(symbolTable)
+ * }</pre>
+ * 不能同时使用的策略在组合时即抛出异常, 而不是在分析时忽略其中一个:
+ * <ul>
+ *     <li>生成的专用解析器不能与错误恢复, 并行分析或逐语句流式分析同时使用</li>
+ *     <li>并发通知观察者不能与逐语句流式分析同时使用</li>
+ * </ul>
+ * 并行分析与并发通知观察者需要按下标读取词法单元, 因此只能用于 TokenBuffer 或支持随机访问的列表, 否则 run 时抛出异常.
+ */
+public final class ParserOptions {
+    /**
+     * @return 默认的策略
+     */
+    public static ParserOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * 以 {@link CompiledLRTable#compress} 压缩存储加载的分析表, 适用于较大的文法
+     *
+     * @return 在此基础上使用压缩的分析表的策略
+     */
+    public ParserOptions withCompressedTable() {
+        return new ParserOptions(true, generatedParser, errorRecovery, parallelism, observerThreads,
+            statementStreaming);
+    }
+
+    /**
+     * 使用根据分析表生成的专用解析器代替解释执行分析表, 见 {@link ParserCodeGenerator}. 生成解析器需要在 JDK 上运行
+     *
+     * @return 在此基础上使用生成的解析器的策略
+     */
+    public ParserOptions withGeneratedParser() {
+        return new ParserOptions(compressedTable, true, errorRecovery, parallelism, observerThreads,
+            statementStreaming);
+    }
+
+    /**
+     * 遇到语法错误时进行恐慌模式的错误恢复, 一次运行报告所有的语法错误, 见 {@link PanicModeRecovery}
+     *
+     * @return 在此基础上启用错误恢复的策略
+     */
+    public ParserOptions withErrorRecovery() {
+        return new ParserOptions(compressedTable, generatedParser, true, parallelism, observerThreads,
+            statementStreaming);
+    }
+
+    /**
+     * 按语句分块并行分析, 见 {@link ParallelStatementParser}
+     *
+     * @param parallelism 线程数, 为 1 时不分块
+     * @return 在此基础上以该线程数并行分析的策略
+     */
+    public ParserOptions withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new RuntimeException("Parallelism must be positive: " + parallelism);
+        }
+        return new ParserOptions(compressedTable, generatedParser, errorRecovery, parallelism, observerThreads,
+            statementStreaming);
+    }
+
+    /**
+     * 先记录事件, 接受时再由各观察者在线程池中并发地消费, 见 {@link ObserverFanOut}
+     *
+     * @param threads 线程数, 为 1 时在分析过程中直接通知观察者
+     * @return 在此基础上以该线程数并发通知观察者的策略
+     */
+    public ParserOptions withObserverThreads(int threads) {
+        if (threads < 1) {
+            throw new RuntimeException("Observer threads must be positive: " + threads);
+        }
+        return new ParserOptions(compressedTable, generatedParser, errorRecovery, parallelism, threads,
+            statementStreaming);
+    }
+
+    /**
+     * 以有界的状态栈逐语句流式分析, 见 {@link StatementFolding}. 观察者一侧的内存见 {@link IRGenerator#setStatementSink}
+     *
+     * @return 在此基础上逐语句流式分析的策略
+     */
+    public ParserOptions withStatementStreaming() {
+        return new ParserOptions(compressedTable, generatedParser, errorRecovery, parallelism, observerThreads, true);
+    }
+
+    /**
+     * @param symbolTable 符号表
+     * @return 使用该策略的语法分析驱动程序
+     */
+    public SyntaxAnalyzer newAnalyzer(SymbolTable symbolTable) {
+        return new SyntaxAnalyzer(symbolTable, this);
+    }
+
+    //==================== 以下为驱动程序读取策略的包内接口 ==============================//
+
+    /**
+     * @return 是否只需要 SyntaxAnalyzer 本身的循环, 而不需要 LRDriver
+     */
+    boolean usesDefaultDriver() {
+        return !generatedParser && !errorRecovery && parallelism == 1 && observerThreads == 1 && !statementStreaming;
+    }
+
+    boolean compressedTable() {
+        return compressedTable;
+    }
+
+    boolean generatedParser() {
+        return generatedParser;
+    }
+
+    boolean errorRecovery() {
+        return errorRecovery;
+    }
+
+    int parallelism() {
+        return parallelism;
+    }
+
+    int observerThreads() {
+        return observerThreads;
+    }
+
+    boolean statementStreaming() {
+        return statementStreaming;
+    }
+
+    private static final ParserOptions DEFAULTS = new ParserOptions(false, false, false, 1, 1, false);
+
+    private ParserOptions(boolean compressedTable, boolean generatedParser, boolean errorRecovery, int parallelism,
+                          int observerThreads, boolean statementStreaming) {
+        if (generatedParser) {
+            reject(errorRecovery, "Generated parser", "error recovery");
+            reject(parallelism > 1, "Generated parser", "parallelism");
+            reject(statementStreaming, "Generated parser", "statement streaming");
+        }
+        reject(observerThreads > 1 && statementStreaming, "Observer threads", "statement streaming");
+
+        this.compressedTable = compressedTable;
+        this.generatedParser = generatedParser;
+        this.errorRecovery = errorRecovery;
+        this.parallelism = parallelism;
+        this.observerThreads = observerThreads;
+        this.statementStreaming = statementStreaming;
+    }
+
+    private static void reject(boolean conflict, String first, String second) {
+        if (conflict) {
+            throw new RuntimeException("%s cannot be combined with %s".formatted(first, second));
+        }
+    }
+
+    private final boolean compressedTable;
+    private final boolean generatedParser;
+    private final boolean errorRecovery;
+    private final int parallelism;
+    private final int observerThreads;
+    private final boolean statementStreaming;
+}
@@ -53,4 +53,10 @@ public class ProductionCollector implements ActionObserver {
     public void setSymbolTable(SymbolTable table) {
         // do nothing
     }
+
+    @Override
+    public ActionSubscription subscription() {
+        // 不关心移入
+        return ActionSubscription.none().withAllReduces().withAccept();
+    }
 }
@@ -0,0 +1,72 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * {@link ReduceLogWriter} 写出的二进制规约日志的解码器
+ * <br>
+ * 日志以内存映射的方式读取, 产生式通过编号从 {@link GrammarInfo#getProductionsInOrder()} 中取得, 解码时不在堆上保存整个日志.
+ */
+public final class ReduceLogReader {
+    private ReduceLogReader() {
+    }
+
+    /**
+     * 按规约顺序依次处理日志中的每条产生式
+     *
+     * @param path   日志文件路径
+     * @param action 对每条产生式执行的操作
+     */
+    public static void forEach(String path, Consumer<Production> action) {
+        final var productions = GrammarInfo.getProductionsInOrder();
+        final var buffer = FileUtils.mapFile(path);
+        try {
+            if (buffer.getInt() != ReduceLogWriter.MAGIC) {
+                throw new RuntimeException("Not a reduce log: " + path);
+            }
+            while (buffer.hasRemaining()) {
+                final var head = readVarint(buffer);
+                final var index = head >>> 1;
+                final var count = (head & 1) == 0 ? 1 : readVarint(buffer) + 2;
+                if (index < 1 || index > productions.size()) {
+                    throw new RuntimeException("Unknown production index %d in %s".formatted(index, path));
+                }
+                final var production = productions.get(index - 1);
+                for (int i = 0; i < count; i++) {
+                    action.accept(production);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new RuntimeException("Truncated reduce log: " + path, e);
+        }
+    }
+
+    /**
+     * 将日志解码为文本, 输出与 {@link ProductionCollector#dumpToFile(String)} 相同
+     *
+     * @param logPath  日志文件路径
+     * @param textPath 文本文件路径
+     */
+    public static void dumpText(String logPath, String textPath) {
+        try (final var writer = FileUtils.openLineWriter(textPath)) {
+            forEach(logPath, writer::println);
+        }
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        var value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final var current = buffer.get();
+            value |= (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 将规约出的产生式边分析边写为紧凑的二进制规约日志的观察者, 是 ProductionCollector 的替代
+ * <br>
+ * ProductionCollector 在整个分析过程中保存所有规约的产生式, 结束后再逐条格式化为文本. 该类只记录产生式的编号,
+ * 连续重复的同一规约 (例如输入结束时的一串 S_list 规约) 合并为一条记录, 缓冲区满时即写入文件, 因此占用的内存与程序长度无关.
+ * 需要文本形式时以 {@link ReduceLogReader#dumpText(String, String)} 解码, 得到与 ProductionCollector 相同的输出. 格式如下:
+ * <pre>
+ * int    magic ('RDLG', 大端序)
+ * 之后为若干条记录, 每条记录以一个 varint 开头: 产生式编号左移一位, 最低位 r 表示是否重复;
+ * r 为 1 时后面再跟一个 varint, 为该产生式连续规约的次数减 2
+ * </pre>
+ * varint 每个字节存放 7 位, 低位在前, 最高位为 1 表示后面还有字节. 产生式编号小于 64 时, 一条不重复的记录只占一个字节.
+ */
+public class ReduceLogWriter implements ActionObserver {
+    static final int MAGIC = 0x52444C47;
+
+    /**
+     * @param path            日志文件路径, 已存在时会被覆盖
+     * @param beginProduction 起始产生式, 接受时记录对它的规约
+     */
+    public ReduceLogWriter(String path, Production beginProduction) {
+        this.path = path;
+        this.beginProduction = beginProduction;
+        this.output = FileUtils.openOutputStream(path);
+        writeInt(MAGIC);
+    }
+
+    /**
+     * 写出尚未写出的记录并关闭文件. 语法分析结束 (包括因错误而结束) 后调用
+     */
+    public void close() {
+        flushRun();
+        flushBuffer();
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        // 当规约时, 记录规约到的产生式
+        record(production.index());
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        // do nothing
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        // 当接受时, 记录下对起始产生式的规约
+        record(beginProduction.index());
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // do nothing
+    }
+
+    @Override
+    public ActionSubscription subscription() {
+        // 不关心移入
+        return ActionSubscription.none().withAllReduces().withAccept();
+    }
+
+    private void record(int productionIndex) {
+        if (productionIndex == runProduction) {
+            runLength++;
+            return;
+        }
+        flushRun();
+        runProduction = productionIndex;
+        runLength = 1;
+    }
+
+    private void flushRun() {
+        if (runLength == 0) {
+            return;
+        }
+        if (runLength == 1) {
+            writeVarint(runProduction << 1);
+        } else {
+            writeVarint(runProduction << 1 | 1);
+            writeVarint(runLength - 2);
+        }
+        runProduction = -1;
+        runLength = 0;
+    }
+
+    private void writeInt(int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            writeByte(value >>> shift);
+        }
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    private void writeByte(int value) {
+        if (bufferSize == buffer.length) {
+            flushBuffer();
+        }
+        buffer[bufferSize++] = (byte) value;
+    }
+
+    private void flushBuffer() {
+        try {
+            output.write(buffer, 0, bufferSize);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+        bufferSize = 0;
+    }
+
+    private final String path;
+    private final Production beginProduction;
+    private final OutputStream output;
+    private final byte[] buffer = new byte[1 << 16];
+    private int bufferSize = 0;
+    // 尚未写出的一串连续重复的规约
+    private int runProduction = -1;
+    private int runLength = 0;
+}
@@ -5,18 +5,20 @@ import cn.edu.hitsz.compiler.lexer.Token;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
-import cn.edu.hitsz.compiler.parser.table.Symbol;
 import cn.edu.hitsz.compiler.symtab.SourceCodeType;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 
-import java.util.Stack;
-
 // TODO: 实验三: 实现语义分析
 public class SemanticAnalyzer implements ActionObserver {
 
     private SymbolTable symbolTable;
-    //语义分析栈
-    private final Stack<Symbol> semanticStack = new Stack<>();
+    // 只有声明语句 S -> D id 需要语义动作, 因此不必维护整个语义分析栈:
+    // D 总是在 id 移入之前规约, 而规约 S -> D id 时最后移入的 id 即为被声明的标识符
+    private final TokenKind identifierKind = TokenKind.fromString("id");
+    // 最近一次规约出的 D 的类型
+    private SourceCodeType declaredType = null;
+    // 最近一次移入的 id
+    private Token lastIdentifier = null;
 
 
     @Override
@@ -30,32 +32,15 @@ public class SemanticAnalyzer implements ActionObserver {
         // TODO: 该过程在遇到 reduce production 时要采取的代码动作
         switch (production.index()) {
             case 4 -> { // S -> D id
-                //弹出栈顶的两个符号
-                Symbol id = semanticStack.pop();
-                Symbol D = semanticStack.pop();
                 //将id的类型设置为D的类型
-                this.symbolTable.get(id.getToken().getText()).setType(D.getType());
-                Symbol S = new Symbol(production.head());
-                S.setType(null);
-                //将S压入栈中
-                semanticStack.push(S);
+                this.symbolTable.get(lastIdentifier.getText()).setType(declaredType);
             }
             case 5 -> { // D -> int
-                //弹出栈顶的符号
-                semanticStack.pop();
                 //将D的类型设置为int
-                Symbol D = new Symbol(production.head());
-                D.setType(SourceCodeType.Int);
-                //将D压入栈中
-                semanticStack.push(D);
+                declaredType = SourceCodeType.Int;
             }
-            default -> { //
-                //弹出与产生式右部相同长度的符号
-                for(int i = 0; i < production.body().size(); i++){
-                    semanticStack.pop();
-                }
-                //将产生式左部符号压入栈中
-                semanticStack.push(new Symbol(production.head()));
+            default -> {
+                // 未订阅其它产生式
             }
         }
     }
@@ -63,13 +48,9 @@ public class SemanticAnalyzer implements ActionObserver {
     @Override
     public void whenShift(Status currentStatus, Token currentToken) {
         // TODO: 该过程在遇到 shift 时要采取的代码动作
-        Symbol symbol = new Symbol(currentToken);
-        if(currentToken.getKind() == TokenKind.fromString("int")){
-            symbol.setType(SourceCodeType.Int);
-        }else{
-            symbol.setType(null);
+        if (currentToken.getKind() == identifierKind) {
+            lastIdentifier = currentToken;
         }
-        semanticStack.push(symbol);
     }
 
     @Override
@@ -78,5 +59,10 @@ public class SemanticAnalyzer implements ActionObserver {
         // 如果需要使用符号表的话, 可以将它或者它的一部分信息存起来, 比如使用一个成员变量存储
         this.symbolTable = table;
     }
-}
 
+    @Override
+    public ActionSubscription subscription() {
+        // 只关心移入与产生式 4, 5 的规约
+        return ActionSubscription.none().withShift().withReduce(4, 5);
+    }
+}
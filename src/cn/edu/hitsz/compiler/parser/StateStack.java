@@ -0,0 +1,70 @@
+package cn.edu.hitsz.compiler.parser;
+
+import java.util.Arrays;
+
+/**
+ * LRDriver 的状态栈, 只存放状态编号, 以数组实现, 容量不足时加倍
+ */
+final class StateStack {
+    void clear() {
+        size = 0;
+    }
+
+    void push(int state) {
+        if (size == states.length) {
+            states = Arrays.copyOf(states, states.length * 2);
+        }
+        states[size++] = state;
+    }
+
+    /**
+     * @param count 弹出的状态数
+     */
+    void pop(int count) {
+        size -= count;
+    }
+
+    /**
+     * 只保留栈底的 size 个状态
+     *
+     * @param size 弹出后栈中剩下的状态数
+     */
+    void truncate(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return 栈顶的状态
+     */
+    int top() {
+        return states[size - 1];
+    }
+
+    /**
+     * @param depth 从栈底数起的下标, 栈底为 0
+     * @return 该处的状态
+     */
+    int get(int depth) {
+        return states[depth];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 在 depth 处插入两个状态, 其上的状态依次上移
+     */
+    void insertPair(int depth, int low, int high) {
+        if (size + 2 > states.length) {
+            states = Arrays.copyOf(states, states.length * 2);
+        }
+        System.arraycopy(states, depth, states, depth + 2, size - depth);
+        states[depth] = low;
+        states[depth + 1] = high;
+        size += 2;
+    }
+
+    private int[] states = new int[64];
+    private int size = 0;
+}
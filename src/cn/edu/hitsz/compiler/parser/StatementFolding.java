@@ -0,0 +1,106 @@
+package cn.edu.hitsz.compiler.parser;
+
+/**
+ * 逐语句流式分析: 以有界的状态栈分析右递归的语句列表, 见 {@link ParserOptions#withStatementStreaming()}
+ * <br>
+ * {@code S_list -> S Semicolon S_list} 是右递归的, 所有 S_list 的规约都发生在输入结束时, 因此状态栈在分析过程中
+ * 每条语句都增长两个状态 (S 的 goto 与分号移入后的状态), 而且对所有语句都相同. 启用后, 这样重复的两个状态 (repeatLow, repeatHigh)
+ * 只记录重复的次数, 不实际压栈, 逻辑上它们位于实际的栈中 repeatBase 之前; 到结尾规约 S_list 而需要弹出它们时再逐对恢复,
+ * 于是状态栈的深度只与单条语句的嵌套深度有关.
+ * <br>
+ * 这只改变状态栈的存储方式, 通知观察者的事件及其状态与顺序分析时完全相同. 观察者一侧的内存见 {@link IRGenerator#setStatementSink}.
+ */
+final class StatementFolding {
+    StatementFolding(StateStack stack) {
+        this.stack = stack;
+    }
+
+    void reset() {
+        repeatBase = -1;
+        repeatCount = 0;
+    }
+
+    /**
+     * 若栈顶是又一条语句留下的 (repeatLow, repeatHigh), 则把它们折叠为计数
+     */
+    void fold() {
+        if (repeatBase < 0) {
+            // 第二条语句结束时栈为 [初始状态, a, q, b, q], 此后每条语句都留下 (b, q)
+            if (stack.size() != 5 || stack.get(2) != stack.get(4)) {
+                return;
+            }
+            repeatBase = 3;
+            repeatLow = stack.get(3);
+            repeatHigh = stack.get(4);
+        }
+        // 实际的栈在 repeatBase 之上只剩若干对 (repeatLow, repeatHigh) 时 (错误恢复之后可能多于一对), 把它们全部折叠.
+        // 要求折叠部分之下的状态也是 repeatHigh, 这样栈顶的状态不受折叠影响, 错误恢复也可以直接扫描实际的栈
+        final var above = stack.size() - repeatBase;
+        if (above < 2 || above % 2 != 0 || stack.get(repeatBase - 1) != repeatHigh) {
+            return;
+        }
+        for (int i = repeatBase; i < stack.size(); i += 2) {
+            if (stack.get(i) != repeatLow || stack.get(i + 1) != repeatHigh) {
+                return;
+            }
+        }
+        repeatCount += above / 2;
+        stack.truncate(repeatBase);
+    }
+
+    /**
+     * 恢复折叠的状态, 直到能从实际的栈中弹出 depth 个状态而不越过 repeatBase, 或者已经没有折叠的状态
+     *
+     * @param depth 即将弹出的状态数
+     */
+    void unfold(int depth) {
+        while (repeatCount > 0 && stack.size() - depth < repeatBase) {
+            stack.insertPair(repeatBase, repeatLow, repeatHigh);
+            repeatCount--;
+        }
+    }
+
+    /**
+     * 错误恢复扫描状态栈之前调用: 恢复一对折叠的状态. 实际的栈中 repeatBase 之下的状态与折叠的状态相同,
+     * 于是按实际的栈扫描与按逻辑上的栈扫描结果一致
+     */
+    void unfoldForRecovery() {
+        unfold(stack.size() - repeatBase + 1);
+    }
+
+    /**
+     * 错误恢复弹出状态之后调用: 若弹到了 repeatBase 之下, 折叠的状态也一并被弹出
+     */
+    void afterTruncate() {
+        if (stack.size() < repeatBase) {
+            repeatCount = 0;
+        }
+    }
+
+    /**
+     * @return 逻辑上的栈中的状态数, 包括折叠的状态
+     */
+    int logicalSize() {
+        return stack.size() + 2 * repeatCount;
+    }
+
+    /**
+     * @return 折叠的状态对数
+     */
+    int repeatCount() {
+        return repeatCount;
+    }
+
+    /**
+     * @return 每条语句留下的两个状态中的第一个, 即 S 的 goto; 只在已折叠时有意义
+     */
+    int repeatLow() {
+        return repeatLow;
+    }
+
+    private final StateStack stack;
+    private int repeatBase = -1;
+    private int repeatLow = 0;
+    private int repeatHigh = 0;
+    private int repeatCount = 0;
+}
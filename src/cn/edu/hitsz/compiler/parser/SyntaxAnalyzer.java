@@ -6,6 +6,7 @@ import cn.edu.hitsz.compiler.parser.table.*;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 //TODO: 实验二: 实现 LR 语法分析驱动程序
 
@@ -16,18 +17,40 @@ import java.util.*;
  * <br>
  * 你应当按照被挖空的方法的文档实现对应方法, 你可以随意为该类添加你需要的私有成员对象, 但不应该再为此类添加公有接口, 也不应该改动未被挖空的方法,
  * 除非你已经同助教充分沟通, 并能证明你的修改的合理性, 且令助教确定可能被改动的评测方法. 随意修改该类的其它部分有可能导致自动评测出错而被扣分.
+ * <br>
+ * 其他的分析策略 (生成的专用解析器, 错误恢复, 并行分析等) 由 {@link ParserOptions} 选择, 由包内的 {@link LRDriver} 实现.
  */
 public class SyntaxAnalyzer {
     private final SymbolTable symbolTable;
-    private final Queue<Token> tokenQueue = new LinkedList<>();
-    private LRTable lrTable;
-    private final Stack<Symbol> symbolStack = new Stack<>();
-    private final Stack<Status> statusStack = new Stack<>();
+    private final ParserOptions options;
+    // 词法单元按需读取, 不复制
+    private TokenCursor tokens = TokenCursor.of(List.of());
+    private CompiledLRTable lrTable;
+    // 状态栈只存放状态编号, 以数组实现, 容量不足时加倍
+    private int[] statusStack = new int[64];
+    private int statusStackSize = 0;
     private final List<ActionObserver> observers = new ArrayList<>();
+    // 各观察者的订阅, 与 observers 一一对应
+    private final List<ActionSubscription> subscriptions = new ArrayList<>();
+    // 按事件预先建立的分派表, reduceObservers 以产生式编号为下标
+    private ActionObserver[] shiftObservers = new ActionObserver[0];
+    private ActionObserver[] acceptObservers = new ActionObserver[0];
+    private ActionObserver[][] reduceObservers = new ActionObserver[0][];
+    private boolean observersSuspended = false;
+    // 选择了非默认的分析策略时使用的驱动程序, 在第一次 run 时创建, 加载新的分析表时关闭并丢弃
+    private LRDriver driver = null;
 
 
     public SyntaxAnalyzer(SymbolTable symbolTable) {
+        this(symbolTable, ParserOptions.defaults());
+    }
+
+    /**
+     * 见 {@link ParserOptions#newAnalyzer(SymbolTable)}
+     */
+    SyntaxAnalyzer(SymbolTable symbolTable, ParserOptions options) {
         this.symbolTable = symbolTable;
+        this.options = options;
     }
 
     /**
@@ -37,7 +60,35 @@ public class SyntaxAnalyzer {
      */
     public void registerObserver(ActionObserver observer) {
         observers.add(observer);
+        subscriptions.add(observer.subscription());
         observer.setSymbolTable(symbolTable);
+        buildDispatch();
+    }
+
+    /**
+     * 根据各观察者的订阅建立分派表, 在注册观察者与加载分析表时调用
+     */
+    private void buildDispatch() {
+        shiftObservers = subscribers(ActionSubscription::shift);
+        acceptObservers = subscribers(ActionSubscription::accept);
+
+        // 分析表中的产生式编号在加载分析表之后才能确定, 此前对规约的通知由 callWhenInReduce 逐个检查订阅
+        final var productionBound = lrTable == null ? 0 : lrTable.productionBound();
+        reduceObservers = new ActionObserver[productionBound][];
+        for (int index = 0; index < productionBound; index++) {
+            final var productionIndex = index;
+            reduceObservers[index] = subscribers(subscription -> subscription.reduce(productionIndex));
+        }
+    }
+
+    private ActionObserver[] subscribers(Predicate<ActionSubscription> interested) {
+        final var result = new ArrayList<ActionObserver>();
+        for (int i = 0; i < observers.size(); i++) {
+            if (interested.test(subscriptions.get(i))) {
+                result.add(observers.get(i));
+            }
+        }
+        return result.toArray(ActionObserver[]::new);
     }
 
     /**
@@ -47,7 +98,7 @@ public class SyntaxAnalyzer {
      * @param currentToken  当前词法单元
      */
     public void callWhenInShift(Status currentStatus, Token currentToken) {
-        for (final var listener : observers) {
+        for (final var listener : shiftObservers) {
             listener.whenShift(currentStatus, currentToken);
         }
     }
@@ -59,8 +110,17 @@ public class SyntaxAnalyzer {
      * @param production    待规约的产生式
      */
     public void callWhenInReduce(Status currentStatus, Production production) {
-        for (final var listener : observers) {
-            listener.whenReduce(currentStatus, production);
+        if (production.index() < reduceObservers.length) {
+            for (final var listener : reduceObservers[production.index()]) {
+                listener.whenReduce(currentStatus, production);
+            }
+            return;
+        }
+
+        for (int i = 0; i < observers.size(); i++) {
+            if (subscriptions.get(i).reduce(production.index())) {
+                observers.get(i).whenReduce(currentStatus, production);
+            }
         }
     }
 
@@ -70,62 +130,134 @@ public class SyntaxAnalyzer {
      * @param currentStatus 当前状态
      */
     public void callWhenInAccept(Status currentStatus) {
-        for (final var listener : observers) {
+        for (final var listener : acceptObservers) {
             listener.whenAccept(currentStatus);
         }
     }
 
     public void loadTokens(Iterable<Token> tokens) {
-        //使用队列存储tokens,只读取一个 token 而不能消耗它时用peek方法
-        for (Token token : tokens) {
-            tokenQueue.offer(token);
-        }
+        // 不复制词法单元, 解析时再逐个读取; TokenBuffer 与支持随机访问的列表直接按下标读取, 见 TokenCursor
+        this.tokens = TokenCursor.of(tokens);
     }
 
     public void loadLRTable(LRTable table) {
-        lrTable = table;
+        // 解析时使用编译后的稠密表 (或按 ParserOptions 压缩的表), 每步查表只需数组访问
+        lrTable = options.compressedTable() ? CompiledLRTable.compress(table) : CompiledLRTable.compile(table);
+        if (driver != null) {
+            driver.close();
+            driver = null;
+        }
+        buildDispatch();
     }
 
     public void run() {
         // 请分别在遇到 Shift, Reduce, Accept 的时候调用上面的 callWhenInShift, callWhenInReduce, callWhenInAccept
+        if (!options.usesDefaultDriver()) {
+            if (driver == null) {
+                driver = new LRDriver(this, lrTable, options);
+            }
+            driver.run();
+            return;
+        }
+
+        // 解析过程中驱动程序本身不分配任何对象: 状态栈是 int 数组, 通知观察者时使用分析表中预先构造的 Status 与 Production
         //初始化状态栈
-        symbolStack.push(new Symbol(Token.eof()));
-        statusStack.push(lrTable.getInit());
-        while (!tokenQueue.isEmpty()) {
-            Token currentToken = tokenQueue.peek();
-            Status currentStatus = statusStack.peek();
-            assert currentToken != null;
-            Action action = lrTable.getAction(currentStatus, currentToken);
-            switch (action.getKind()) {
-                case Shift:
-                    //移入
-                    callWhenInShift(currentStatus, currentToken);
-                    tokenQueue.poll();
-                    symbolStack.push(new Symbol(currentToken));
-                    statusStack.push(action.getStatus());
+        statusStackSize = 0;
+        pushStatus(lrTable.initState());
+        while (tokens.peekKind() != null) {
+            int currentState = statusStack[statusStackSize - 1];
+            int action = lrTable.action(currentState, lrTable.terminalOrdinal(tokens.peekKind()));
+            switch (CompiledLRTable.actionKind(action)) {
+                case CompiledLRTable.SHIFT:
+                    //移入. 从 TokenBuffer 读取时 Token 对象是按需构造的, 没有观察者关心移入时不构造
+                    if (hasShiftObservers()) {
+                        callWhenInShift(lrTable.status(currentState), tokens.peekToken());
+                    }
+                    tokens.poll();
+                    pushStatus(CompiledLRTable.actionOperand(action));
                     break;
-                case Reduce:
+                case CompiledLRTable.REDUCE:
                     //归约
-                    Production production = action.getProduction();
-                    callWhenInReduce(currentStatus, production);
-                    for (int i = 0; i < production.body().size(); i++) {
-                        symbolStack.pop();
-                        statusStack.pop();
-                    }
-                    NonTerminal left = production.head();
-                    symbolStack.push(new Symbol(left));
-                    Status nextStatus = lrTable.getGoto(statusStack.peek(), left);
-                    statusStack.push(nextStatus);
+                    int productionIndex = CompiledLRTable.actionOperand(action);
+                    callWhenInReduce(lrTable.status(currentState), lrTable.production(productionIndex));
+                    statusStackSize -= lrTable.productionLength(productionIndex);
+                    pushStatus(lrTable.gotoState(statusStack[statusStackSize - 1], lrTable.productionHead(productionIndex)));
                     break;
-                case Accept:
+                case CompiledLRTable.ACCEPT:
                     //接受
-                    callWhenInAccept(currentStatus);
+                    callWhenInAccept(lrTable.status(currentState));
                     return;
-                case Error:
+                default:
                     throw new RuntimeException("Syntax error");
             }
         }
 
         throw new NotImplementedException();
     }
+
+    private void pushStatus(int state) {
+        if (statusStackSize == statusStack.length) {
+            statusStack = Arrays.copyOf(statusStack, statusStack.length * 2);
+        }
+        statusStack[statusStackSize++] = state;
+    }
+
+    //==================== 以下为 LRDriver 与 IncrementalParser 使用的包内接口 ==============================//
+
+    /**
+     * @return 加载的分析表
+     */
+    CompiledLRTable getLRTable() {
+        return lrTable;
+    }
+
+    /**
+     * @return 加载的词法单元
+     */
+    TokenCursor tokens() {
+        return tokens;
+    }
+
+    /**
+     * @return 注册的观察者, 按注册的顺序
+     */
+    List<ActionObserver> observers() {
+        return observers;
+    }
+
+    /**
+     * @return 各观察者的订阅, 与 observers 一一对应
+     */
+    List<ActionSubscription> subscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * @return 是否有观察者关心移入动作
+     */
+    boolean hasShiftObservers() {
+        return shiftObservers.length > 0;
+    }
+
+    /**
+     * 不再通知任何观察者, 直到 resumeObservers. 错误恢复在第一个错误之后调用
+     */
+    void suspendObservers() {
+        observersSuspended = true;
+        shiftObservers = new ActionObserver[0];
+        acceptObservers = new ActionObserver[0];
+        for (int index = 0; index < reduceObservers.length; index++) {
+            reduceObservers[index] = new ActionObserver[0];
+        }
+    }
+
+    /**
+     * 恢复通知观察者, 每次 run 开始时调用
+     */
+    void resumeObservers() {
+        if (observersSuspended) {
+            observersSuspended = false;
+            buildDispatch();
+        }
+    }
 }
@@ -0,0 +1,18 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+
+/**
+ * 错误恢复模式下记录的一处语法错误
+ *
+ * @param tokenIndex 出错的词法单元在词法单元序列中的下标, 从 0 开始
+ * @param token      出错的词法单元, 即无法被分析的向前看符号
+ * @param state      出错时栈顶的状态编号
+ * @see PanicModeRecovery
+ */
+public record SyntaxError(int tokenIndex, Token token, int state) {
+    @Override
+    public String toString() {
+        return "Syntax error at token #%d %s (state %d)".formatted(tokenIndex, token, state);
+    }
+}
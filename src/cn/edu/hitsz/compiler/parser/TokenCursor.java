@@ -0,0 +1,131 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 驱动程序读取词法单元的游标
+ * <br>
+ * 不复制词法单元, 解析时再逐个读取. 词法单元可以来自:
+ * <ul>
+ *     <li>{@link TokenBuffer}: 只读取类型的码点, Token 对象仅在移入时按需构造</li>
+ *     <li>支持随机访问的列表: 直接按下标读取, 不经过迭代器</li>
+ *     <li>其他任意序列: 按需从迭代器中拉取, 只缓存一个尚未被移入的词法单元;
+ *     若序列是按需分析的流式序列, 则解析可以在第一个词法单元产生后立刻开始</li>
+ * </ul>
+ * 前两种支持按下标读取任意位置的词法单元, 供按语句分块的并行分析与事件的回放使用.
+ */
+final class TokenCursor {
+    /**
+     * @param tokens 词法单元序列
+     * @return 从序列开头读取的游标
+     */
+    static TokenCursor of(Iterable<Token> tokens) {
+        if (tokens instanceof TokenBuffer buffer) {
+            return new TokenCursor(buffer, null, Collections.emptyIterator());
+        }
+        if (tokens instanceof List<Token> list && tokens instanceof RandomAccess) {
+            return new TokenCursor(null, list, Collections.emptyIterator());
+        }
+        return new TokenCursor(null, null, tokens.iterator());
+    }
+
+    /**
+     * @return 下一个尚未被移入的词法单元的类型; 没有更多词法单元时返回 null
+     */
+    TokenKind peekKind() {
+        if (buffer != null) {
+            return index < buffer.size() ? buffer.kind(index) : null;
+        }
+
+        final var token = peekToken();
+        return token == null ? null : token.getKind();
+    }
+
+    /**
+     * @return 下一个尚未被移入的词法单元, 不消耗它; 没有更多词法单元时返回 null
+     */
+    Token peekToken() {
+        if (buffer != null) {
+            return index < buffer.size() ? buffer.get(index) : null;
+        }
+        if (list != null) {
+            return index < list.size() ? list.get(index) : null;
+        }
+
+        if (lookahead == null && iterator.hasNext()) {
+            lookahead = iterator.next();
+        }
+        return lookahead;
+    }
+
+    /**
+     * 消耗掉下一个尚未被移入的词法单元
+     */
+    void poll() {
+        index++;
+        lookahead = null;
+    }
+
+    /**
+     * @return 下一个尚未被移入的词法单元的下标. 从迭代器读取时只用于在错误信息中标明位置
+     */
+    int index() {
+        return index;
+    }
+
+    /**
+     * @return 是否支持按下标读取任意位置的词法单元
+     */
+    boolean randomAccess() {
+        return buffer != null || list != null;
+    }
+
+    /**
+     * 跳到下标处, 只在支持随机访问时使用
+     *
+     * @param index 下一个尚未被移入的词法单元的下标
+     */
+    void seek(int index) {
+        this.index = index;
+    }
+
+    /**
+     * @return 词法单元的个数, 只在支持随机访问时使用
+     */
+    int size() {
+        return buffer != null ? buffer.size() : list.size();
+    }
+
+    /**
+     * @return 下标处的词法单元的类型, 只在支持随机访问时使用
+     */
+    TokenKind kindAt(int index) {
+        return buffer != null ? buffer.kind(index) : list.get(index).getKind();
+    }
+
+    /**
+     * @return 下标处的词法单元, 只在支持随机访问时使用
+     */
+    Token tokenAt(int index) {
+        return buffer != null ? buffer.get(index) : list.get(index);
+    }
+
+    private TokenCursor(TokenBuffer buffer, List<Token> list, Iterator<Token> iterator) {
+        this.buffer = buffer;
+        this.list = list;
+        this.iterator = iterator;
+    }
+
+    private final TokenBuffer buffer;
+    private final List<Token> list;
+    private final Iterator<Token> iterator;
+    private Token lookahead = null;
+    private int index = 0;
+}
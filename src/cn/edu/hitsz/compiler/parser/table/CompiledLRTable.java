@@ -0,0 +1,350 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * LRTable 的编译形式: 以整数下标访问的 action 与 goto 表
+ * <br>
+ * LRTable 中每次查表都要以 TokenKind 或 NonTerminal 为键查 HashMap, 即对其名字字符串求哈希.
+ * 编译后状态以其编号表示, 终结符与非终结符各自被映射为连续的序号, 查表只需常数次数组访问.
+ * 表的存储方式有两种: {@code compile} 得到以 {@code int[状态][序号]} 存储的稠密表,
+ * {@code compress} 得到行位移压缩的表 (见 {@link CompressedLRTable}). 两者只有在出错时的行为不同.
+ * <br>
+ * action 表中每个动作被编码为一个 int: 低两位为动作类型 ({@code ERROR}, {@code SHIFT}, {@code REDUCE}, {@code ACCEPT}),
+ * 其余位为移入后的状态编号或规约所用产生式的编号, 分别通过 {@code actionKind} 与 {@code actionOperand} 取得.
+ * goto 表中直接存放转移到的状态编号, 没有转移时为 {@code NO_GOTO}.
+ * <br>
+ * 编译只使用 LRTable 与 Status 的公有接口, 因此 TableLoader 读取的与 TableGenerator 生成的分析表都可以编译.
+ */
+public abstract class CompiledLRTable {
+    public static final int ERROR = 0;
+    public static final int SHIFT = 1;
+    public static final int REDUCE = 2;
+    public static final int ACCEPT = 3;
+
+    /**
+     * goto 表中代表没有转移的值
+     */
+    public static final int NO_GOTO = -1;
+
+    /**
+     * 编译分析表, 得到稠密表
+     *
+     * @param table 分析表
+     * @return 编译后的分析表
+     */
+    public static CompiledLRTable compile(LRTable table) {
+        return new DenseLRTable(collect(table));
+    }
+
+    /**
+     * 编译分析表, 得到压缩表
+     *
+     * @param table 分析表
+     * @return 编译后的分析表
+     * @see CompressedLRTable
+     */
+    public static CompiledLRTable compress(LRTable table) {
+        return new CompressedLRTable(collect(table));
+    }
+
+    /**
+     * @return 起始状态的编号
+     */
+    public int initState() {
+        return initState;
+    }
+
+    /**
+     * @param kind 词法单元类型
+     * @return 该终结符的序号
+     */
+    public int terminalOrdinal(TokenKind kind) {
+        return terminalOrdinalsByCode[kind.getCode() - minCode];
+    }
+
+    /**
+     * @param nonTerminal 非终结符
+     * @return 该非终结符的序号
+     * @throws RuntimeException 该非终结符不在分析表中
+     */
+    public int nonTerminalOrdinal(NonTerminal nonTerminal) {
+        final var ordinal = nonTerminalOrdinals.get(nonTerminal);
+        if (ordinal == null) {
+            throw new RuntimeException("Unknown non-terminal: " + nonTerminal);
+        }
+
+        return ordinal;
+    }
+
+    /**
+     * @param state    状态编号
+     * @param terminal 终结符的序号
+     * @return 编码后的动作
+     */
+    public abstract int action(int state, int terminal);
+
+    /**
+     * @param state       状态编号
+     * @param nonTerminal 非终结符的序号
+     * @return 转移到的状态编号, 没有转移时为 {@code NO_GOTO}
+     */
+    public abstract int gotoState(int state, int nonTerminal);
+
+    /**
+     * @return 存储 action 与 goto 表所用的 int 个数
+     */
+    public abstract int cellCount();
+
+    /**
+     * @param action 编码后的动作
+     * @return 动作类型, 为 {@code ERROR}, {@code SHIFT}, {@code REDUCE}, {@code ACCEPT} 之一
+     */
+    public static int actionKind(int action) {
+        return action & KIND_MASK;
+    }
+
+    /**
+     * @param action 编码后的移入或规约动作
+     * @return 移入后的状态编号, 或规约所用产生式的编号
+     */
+    public static int actionOperand(int action) {
+        return action >>> KIND_BITS;
+    }
+
+    /**
+     * @param index 产生式的编号
+     * @return 产生式
+     */
+    public Production production(int index) {
+        return productions[index];
+    }
+
+    /**
+     * @return 产生式编号的上界 (不包含)
+     */
+    public int productionBound() {
+        return productions.length;
+    }
+
+    /**
+     * @param index 产生式的编号
+     * @return 产生式头的非终结符序号
+     */
+    public int productionHead(int index) {
+        return productionHeads[index];
+    }
+
+    /**
+     * @param index 产生式的编号
+     * @return 产生式体的长度
+     */
+    public int productionLength(int index) {
+        return productionLengths[index];
+    }
+
+    /**
+     * @param state 状态编号
+     * @return 对应的 Status, 用于通知观察者
+     */
+    public Status status(int state) {
+        return statuses[state];
+    }
+
+    /**
+     * @return 状态编号的上界 (不包含)
+     */
+    public int stateCount() {
+        return statuses.length;
+    }
+
+    /**
+     * @return 终结符的个数
+     */
+    public int terminalCount() {
+        return terminals.length;
+    }
+
+    /**
+     * @return 非终结符的个数
+     */
+    public int nonTerminalCount() {
+        return nonTerminals.length;
+    }
+
+    /**
+     * @param ordinal 终结符的序号
+     * @return 该序号对应的终结符
+     */
+    public TokenKind terminal(int ordinal) {
+        return terminals[ordinal];
+    }
+
+    /**
+     * @param ordinal 非终结符的序号
+     * @return 该序号对应的非终结符
+     */
+    public NonTerminal nonTerminal(int ordinal) {
+        return nonTerminals[ordinal];
+    }
+
+    /**
+     * 供错误恢复使用: 判断状态能否移入某个终结符. 压缩表中的错误单元可能被默认规约填充,
+     * 因此这里与 {@link #exactGotoState} 一样直接查询原始的 Status, 只在出错时调用, 不追求速度
+     *
+     * @param state    状态编号
+     * @param terminal 终结符的序号
+     * @return 该状态在该终结符上的动作是否为移入
+     */
+    public boolean canShift(int state, int terminal) {
+        return actionKind(lookupAction(state, terminal)) == SHIFT;
+    }
+
+    /**
+     * 供错误恢复使用: 与 {@link #gotoState} 相同, 但对压缩表也能准确地区分没有转移的情况
+     *
+     * @param state       状态编号
+     * @param nonTerminal 非终结符的序号
+     * @return 转移到的状态编号, 没有转移时为 {@code NO_GOTO}
+     */
+    public int exactGotoState(int state, int nonTerminal) {
+        return lookupGoto(state, nonTerminal);
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    private static final int KIND_BITS = 2;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    /**
+     * 从起始状态出发可达的所有状态, 以及其中出现的非终结符与产生式
+     */
+    record Contents(Status init, TreeMap<Integer, Status> statuses,
+                    TreeMap<String, NonTerminal> nonTerminals, TreeMap<Integer, Production> productions) {
+    }
+
+    /**
+     * 从起始状态出发遍历所有可达的状态, 收集其中出现的非终结符与产生式
+     */
+    private static Contents collect(LRTable table) {
+        final var init = table.getInit();
+        final var statuses = new TreeMap<Integer, Status>();
+        final var nonTerminals = new TreeMap<String, NonTerminal>();
+        final var productions = new TreeMap<Integer, Production>();
+
+        final var pending = new ArrayDeque<Status>();
+        statuses.put(init.index(), init);
+        pending.add(init);
+        while (!pending.isEmpty()) {
+            final var status = pending.poll();
+            for (final var action : status.action().values()) {
+                if (action.getKind() == Action.ActionKind.Shift) {
+                    final var to = action.getStatus();
+                    if (statuses.putIfAbsent(to.index(), to) == null) {
+                        pending.add(to);
+                    }
+                } else if (action.getKind() == Action.ActionKind.Reduce) {
+                    final var production = action.getProduction();
+                    productions.put(production.index(), production);
+                    nonTerminals.putIfAbsent(production.head().getTermName(), production.head());
+                }
+            }
+            for (final var entry : status.goto_().entrySet()) {
+                nonTerminals.putIfAbsent(entry.getKey().getTermName(), entry.getKey());
+                final var to = entry.getValue();
+                if (!to.isError() && statuses.putIfAbsent(to.index(), to) == null) {
+                    pending.add(to);
+                }
+            }
+        }
+
+        return new Contents(init, statuses, nonTerminals, productions);
+    }
+
+    CompiledLRTable(Contents contents) {
+        // 终结符按码点排序, 码点不一定连续, 因此再用一个以码点为下标的数组映射到序号
+        this.terminals = TokenKind.allAllowedTokenKinds().values().stream()
+            .sorted(Comparator.comparingInt(TokenKind::getCode))
+            .toArray(TokenKind[]::new);
+        this.minCode = terminals[0].getCode();
+        this.terminalOrdinalsByCode = new int[terminals[terminals.length - 1].getCode() - minCode + 1];
+        Arrays.fill(terminalOrdinalsByCode, -1);
+        for (int ordinal = 0; ordinal < terminals.length; ordinal++) {
+            terminalOrdinalsByCode[terminals[ordinal].getCode() - minCode] = ordinal;
+        }
+
+        this.nonTerminals = contents.nonTerminals().values().toArray(NonTerminal[]::new);
+        for (int ordinal = 0; ordinal < nonTerminals.length; ordinal++) {
+            nonTerminalOrdinals.put(nonTerminals[ordinal], ordinal);
+        }
+
+        final var productionsByIndex = contents.productions();
+        final var productionBound = productionsByIndex.isEmpty() ? 0 : productionsByIndex.lastKey() + 1;
+        this.productions = new Production[productionBound];
+        this.productionHeads = new int[productionBound];
+        this.productionLengths = new int[productionBound];
+        for (final var production : productionsByIndex.values()) {
+            productions[production.index()] = production;
+            productionHeads[production.index()] = nonTerminalOrdinals.get(production.head());
+            productionLengths[production.index()] = production.body().size();
+        }
+
+        // 不可达的状态编号 (若有) 没有对应的 Status, 视为所有动作都是错误
+        this.initState = contents.init().index();
+        this.statuses = new Status[contents.statuses().lastKey() + 1];
+        for (final var status : contents.statuses().values()) {
+            statuses[status.index()] = status;
+        }
+    }
+
+    /**
+     * 从 Status 中读取编码后的动作, 供子类构造自己的存储
+     */
+    int lookupAction(int state, int terminal) {
+        final var status = statuses[state];
+        return status == null ? ERROR : encode(status.getAction(terminals[terminal]));
+    }
+
+    /**
+     * 从 Status 中读取 goto 的目标状态, 供子类构造自己的存储
+     */
+    int lookupGoto(int state, int nonTerminal) {
+        final var status = statuses[state];
+        if (status == null) {
+            return NO_GOTO;
+        }
+
+        final var to = status.getGoto(nonTerminals[nonTerminal]);
+        return to.isError() ? NO_GOTO : to.index();
+    }
+
+    /**
+     * @return 编码后的动作, 编码方式见类的说明
+     */
+    static int encode(Action action) {
+        return switch (action.getKind()) {
+            case Shift -> action.getStatus().index() << KIND_BITS | SHIFT;
+            case Reduce -> action.getProduction().index() << KIND_BITS | REDUCE;
+            case Accept -> ACCEPT;
+            case Error -> ERROR;
+        };
+    }
+
+    private final int initState;
+    private final TokenKind[] terminals;
+    private final int minCode;
+    private final int[] terminalOrdinalsByCode;
+    private final NonTerminal[] nonTerminals;
+    private final Map<NonTerminal, Integer> nonTerminalOrdinals = new HashMap<>();
+    private final Production[] productions;
+    private final int[] productionHeads;
+    private final int[] productionLengths;
+    private final Status[] statuses;
+}
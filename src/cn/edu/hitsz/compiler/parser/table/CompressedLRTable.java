@@ -0,0 +1,181 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * 以行位移 (row displacement, 又称 comb vector) 方式压缩存储的分析表
+ * <br>
+ * 规范 LR(1) 分析表中绝大多数单元都是错误动作. 行位移压缩把每一行的非空单元平移一个位移量后叠放到同一个一维数组中,
+ * 只要求各行的非空单元互不重叠; 另用一个等长的 check 数组记录每个单元属于哪一行. 查表时计算 {@code base[行] + 列},
+ * 若该位置的 check 等于行号则取其中的值, 否则取该行的默认值, 仍然只需常数次数组访问.
+ * <br>
+ * action 表按状态分行, 并使用默认规约: 若一个状态的所有非错误动作都是按同一条产生式规约, 则该状态不必查看向前看符号,
+ * 其整行都不存储, 任何终结符都得到该规约. 这与 yacc 的做法相同, 只会让错误在若干次规约之后才被发现,
+ * 对于合法的输入结果与稠密表完全相同.
+ * <br>
+ * goto 表按非终结符分列存储, 每列以出现最多的目标状态为默认值. goto 只在合法的规约之后查询, 因此总能查到正确的目标.
+ *
+ * @see CompiledLRTable#compress(LRTable)
+ */
+final class CompressedLRTable extends CompiledLRTable {
+    CompressedLRTable(Contents contents) {
+        super(contents);
+
+        // action 表: 整行都是同一规约的状态使用默认规约, 其余状态的默认动作为错误
+        this.defaultActions = new int[stateCount()];
+        final var actionRows = new int[stateCount()][terminalCount()];
+        for (int state = 0; state < stateCount(); state++) {
+            for (int terminal = 0; terminal < terminalCount(); terminal++) {
+                actionRows[state][terminal] = lookupAction(state, terminal);
+            }
+
+            final var actions = Arrays.stream(actionRows[state]).filter(action -> action != ERROR).distinct().toArray();
+            if (actions.length == 1 && actionKind(actions[0]) == REDUCE) {
+                defaultActions[state] = actions[0];
+                Arrays.fill(actionRows[state], ERROR);
+            }
+        }
+        final var actionTable = pack(actionRows, ERROR);
+        this.actionBases = actionTable.bases();
+        this.actionChecks = actionTable.checks();
+        this.actionValues = actionTable.values();
+
+        // goto 表: 按非终结符分列, 每列以出现最多的目标状态为默认值
+        this.defaultGotos = new int[nonTerminalCount()];
+        final var gotoColumns = new int[nonTerminalCount()][stateCount()];
+        for (int nonTerminal = 0; nonTerminal < nonTerminalCount(); nonTerminal++) {
+            final var targetCounts = new HashMap<Integer, Integer>();
+            for (int state = 0; state < stateCount(); state++) {
+                gotoColumns[nonTerminal][state] = lookupGoto(state, nonTerminal);
+                if (gotoColumns[nonTerminal][state] != NO_GOTO) {
+                    targetCounts.merge(gotoColumns[nonTerminal][state], 1, Integer::sum);
+                }
+            }
+
+            defaultGotos[nonTerminal] = targetCounts.entrySet().stream()
+                .max(Comparator.comparingInt(entry -> entry.getValue()))
+                .map(entry -> entry.getKey())
+                .orElse(NO_GOTO);
+            for (int state = 0; state < stateCount(); state++) {
+                if (gotoColumns[nonTerminal][state] == defaultGotos[nonTerminal]) {
+                    gotoColumns[nonTerminal][state] = NO_GOTO;
+                }
+            }
+        }
+        final var gotoTable = pack(gotoColumns, NO_GOTO);
+        this.gotoBases = gotoTable.bases();
+        this.gotoChecks = gotoTable.checks();
+        this.gotoValues = gotoTable.values();
+    }
+
+    @Override
+    public int action(int state, int terminal) {
+        final var index = actionBases[state] + terminal;
+        return actionChecks[index] == state ? actionValues[index] : defaultActions[state];
+    }
+
+    @Override
+    public int gotoState(int state, int nonTerminal) {
+        final var index = gotoBases[nonTerminal] + state;
+        return gotoChecks[index] == nonTerminal ? gotoValues[index] : defaultGotos[nonTerminal];
+    }
+
+    @Override
+    public int cellCount() {
+        return actionBases.length + actionChecks.length + actionValues.length + defaultActions.length
+            + gotoBases.length + gotoChecks.length + gotoValues.length + defaultGotos.length;
+    }
+
+    /**
+     * 行位移压缩的结果
+     *
+     * @param bases  各行的位移
+     * @param checks 各单元所属的行, 空闲单元为 -1
+     * @param values 各单元的值
+     */
+    private record Packed(int[] bases, int[] checks, int[] values) {
+    }
+
+    /**
+     * 按首次适应 (first fit) 压缩各行: 先放非空单元最多的行, 为每行找最小的不与已放置单元重叠的位移
+     *
+     * @param rows  各行
+     * @param empty 代表空单元的值
+     * @return 压缩的结果
+     */
+    private static Packed pack(int[][] rows, int empty) {
+        final var bases = new int[rows.length];
+        var checks = new int[0];
+        var values = new int[0];
+
+        final var nonEmpty = new int[rows.length][];
+        for (int row = 0; row < rows.length; row++) {
+            final var cells = rows[row];
+            nonEmpty[row] = IntStream.range(0, cells.length).filter(column -> cells[column] != empty).toArray();
+        }
+        final var order = IntStream.range(0, rows.length).boxed()
+            .sorted(Comparator.comparingInt((Integer row) -> nonEmpty[row].length).reversed())
+            .mapToInt(Integer::intValue).toArray();
+
+        for (final var row : order) {
+            final var columns = nonEmpty[row];
+            if (columns.length == 0) {
+                continue;
+            }
+
+            var base = 0;
+            while (!fits(checks, base, columns)) {
+                base++;
+            }
+
+            final var end = base + columns[columns.length - 1] + 1;
+            if (end > checks.length) {
+                final var oldLength = checks.length;
+                checks = Arrays.copyOf(checks, Math.max(end, oldLength * 2));
+                values = Arrays.copyOf(values, checks.length);
+                Arrays.fill(checks, oldLength, checks.length, -1);
+            }
+            bases[row] = base;
+            for (final var column : columns) {
+                checks[base + column] = row;
+                values[base + column] = rows[row][column];
+            }
+        }
+
+        // 末尾补齐到 最大位移 + 行宽, 于是任何 base + 列 都不越界, 查表时不必检查下标
+        final var width = rows.length == 0 ? 0 : rows[0].length;
+        var length = width;
+        for (final var base : bases) {
+            length = Math.max(length, base + width);
+        }
+        final var oldLength = checks.length;
+        checks = Arrays.copyOf(checks, length);
+        values = Arrays.copyOf(values, length);
+        if (length > oldLength) {
+            Arrays.fill(checks, oldLength, length, -1);
+        }
+        return new Packed(bases, checks, values);
+    }
+
+    private static boolean fits(int[] checks, int base, int[] columns) {
+        for (final var column : columns) {
+            if (base + column < checks.length && checks[base + column] != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 压缩后的数组直接作为字段, 查表时不再经过 Packed 间接访问
+    private final int[] defaultActions;
+    private final int[] actionBases;
+    private final int[] actionChecks;
+    private final int[] actionValues;
+    private final int[] defaultGotos;
+    private final int[] gotoBases;
+    private final int[] gotoChecks;
+    private final int[] gotoValues;
+}
@@ -0,0 +1,40 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+/**
+ * 以 {@code int[状态][序号]} 稠密二维数组存储的分析表, 每次查表只需两次数组访问
+ *
+ * @see CompiledLRTable#compile(LRTable)
+ */
+final class DenseLRTable extends CompiledLRTable {
+    DenseLRTable(Contents contents) {
+        super(contents);
+        this.actions = new int[stateCount()][terminalCount()];
+        this.gotos = new int[stateCount()][nonTerminalCount()];
+        for (int state = 0; state < stateCount(); state++) {
+            for (int terminal = 0; terminal < terminalCount(); terminal++) {
+                actions[state][terminal] = lookupAction(state, terminal);
+            }
+            for (int nonTerminal = 0; nonTerminal < nonTerminalCount(); nonTerminal++) {
+                gotos[state][nonTerminal] = lookupGoto(state, nonTerminal);
+            }
+        }
+    }
+
+    @Override
+    public int action(int state, int terminal) {
+        return actions[state][terminal];
+    }
+
+    @Override
+    public int gotoState(int state, int nonTerminal) {
+        return gotos[state][nonTerminal];
+    }
+
+    @Override
+    public int cellCount() {
+        return stateCount() * (terminalCount() + nonTerminalCount());
+    }
+
+    private final int[][] actions;
+    private final int[][] gotos;
+}
@@ -0,0 +1,422 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * LR(0) 规范项目集族及其转移函数的快速构造
+ * <br>
+ * 项目被编码为整数: 产生式 p 的点在位置 d 的项目编号为 {@code itemBase[p] + d}; 项目集是以项目编号为下标的位图,
+ * 其哈希值在构造时计算一次. 对每个非终结符 X 预先求出 "点在以 X 为头的产生式开头的项目" 的闭包,
+ * 于是求一个核的闭包只需把核中各项目点后符号对应的预计算结果按位或起来.
+ * 求后继项目集时只扫描一遍项目集, 按点后符号把后继项目分入各自的核, 每个 (状态, 符号) 的转移只计算一次并记录下来.
+ * <br>
+ * 状态的编号顺序与 TableGenerator 原先的构造方式相同: 按广度优先的顺序处理状态, 每个状态按 symbols 的顺序尝试各文法符号,
+ * 新的项目集按被发现的顺序编号. 因此生成的分析表与原来完全相同. 对于很大的文法, 可以在 ForkJoinPool 上并行地展开每一层的状态,
+ * 编号仍然确定, 见 {@link #construct(int)}.
+ *
+ * @see TableGenerator
+ */
+final class ItemSetAutomaton {
+    /**
+     * @param productions 按编号排列的产生式, 第一条为增广产生式
+     * @param symbols     所有文法符号, 其顺序决定了状态的编号顺序
+     */
+    ItemSetAutomaton(List<Production> productions, List<Term> symbols) {
+        this(productions, symbols, 1);
+    }
+
+    /**
+     * @param productions 按编号排列的产生式, 第一条为增广产生式
+     * @param symbols     所有文法符号, 其顺序决定了状态的编号顺序
+     * @param parallelism 展开项目集时使用的线程数, 为 1 时在当前线程中构造; 构造的结果与线程数无关
+     */
+    ItemSetAutomaton(List<Production> productions, List<Term> symbols, int parallelism) {
+        this.productions = productions;
+        this.symbols = symbols;
+        for (int symbol = 0; symbol < symbols.size(); symbol++) {
+            symbolIndices.put(symbols.get(symbol), symbol);
+        }
+
+        // 项目编号
+        this.itemBase = new int[productions.size()];
+        var itemCount = 0;
+        for (int production = 0; production < productions.size(); production++) {
+            itemBase[production] = itemCount;
+            itemCount += productions.get(production).body().size() + 1;
+        }
+        this.itemProductions = new int[itemCount];
+        this.itemDots = new int[itemCount];
+        this.afterDot = new int[itemCount];
+        for (int production = 0; production < productions.size(); production++) {
+            final var body = productions.get(production).body();
+            for (int dot = 0; dot <= body.size(); dot++) {
+                final var item = itemBase[production] + dot;
+                itemProductions[item] = production;
+                itemDots[item] = dot;
+                afterDot[item] = dot == body.size() ? NO_SYMBOL : symbolIndex(body.get(dot));
+            }
+        }
+
+        // 按产生式头索引产生式
+        final var byHead = new HashMap<Integer, List<Integer>>();
+        for (int production = 0; production < productions.size(); production++) {
+            final var head = symbolIndex(productions.get(production).head());
+            byHead.computeIfAbsent(head, key -> new ArrayList<>()).add(production);
+        }
+        this.productionsByHead = new int[symbols.size()][];
+        for (int symbol = 0; symbol < symbols.size(); symbol++) {
+            productionsByHead[symbol] = byHead.getOrDefault(symbol, List.of()).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        this.wordCount = (itemCount + 63) / 64;
+        computeSymbolClosures();
+        construct(parallelism);
+    }
+
+    /**
+     * @return 状态个数
+     */
+    int stateCount() {
+        return states.size();
+    }
+
+    /**
+     * @param state  状态编号
+     * @param symbol 文法符号在 symbols 中的下标
+     * @return 转移到的状态编号, 没有转移时为 -1
+     */
+    int transition(int state, int symbol) {
+        return transitions.get(state)[symbol];
+    }
+
+    /**
+     * @param term 文法符号
+     * @return 该文法符号在 symbols 中的下标
+     */
+    int symbolIndex(Term term) {
+        final var index = symbolIndices.get(term);
+        if (index == null) {
+            throw new RuntimeException("Unknown term in grammar: " + term);
+        }
+
+        return index;
+    }
+
+    /**
+     * @return 文法符号个数
+     */
+    int symbolCount() {
+        return symbols.size();
+    }
+
+    /**
+     * @param symbol 文法符号在 symbols 中的下标
+     * @return 该文法符号
+     */
+    Term symbol(int symbol) {
+        return symbols.get(symbol);
+    }
+
+    /**
+     * @return 产生式个数
+     */
+    int productionCount() {
+        return productions.size();
+    }
+
+    /**
+     * @param production 产生式的下标
+     * @return 该产生式
+     */
+    Production production(int production) {
+        return productions.get(production);
+    }
+
+    /**
+     * @param symbol 文法符号在 symbols 中的下标
+     * @return 以该文法符号为头的各产生式的下标, 终结符对应空数组
+     */
+    int[] productionsByHead(int symbol) {
+        return productionsByHead[symbol];
+    }
+
+    /**
+     * @param production 产生式的下标
+     * @param dot        点的位置
+     * @return 对应项目的编号
+     */
+    int item(int production, int dot) {
+        return itemBase[production] + dot;
+    }
+
+    /**
+     * @param state 状态编号
+     * @param item  项目编号
+     * @return 该状态的项目集中是否含有该项目
+     */
+    boolean contains(int state, int item) {
+        return (states.get(state).words[item >>> 6] & (1L << item)) != 0;
+    }
+
+    /**
+     * @param state 状态编号
+     * @return 该状态的项目集中各项目的编号, 按编号升序
+     */
+    int[] items(int state) {
+        final var words = states.get(state).words;
+        var size = 0;
+        for (final var word : words) {
+            size += Long.bitCount(word);
+        }
+
+        final var result = new int[size];
+        var count = 0;
+        for (int word = 0; word < words.length; word++) {
+            for (var bits = words[word]; bits != 0; bits &= bits - 1) {
+                result[count++] = word * 64 + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param item 项目编号
+     * @return 该项目的产生式
+     */
+    Production itemProduction(int item) {
+        return productions.get(itemProductions[item]);
+    }
+
+    /**
+     * @param item 项目编号
+     * @return 该项目中点的位置
+     */
+    int itemDot(int item) {
+        return itemDots[item];
+    }
+
+    /**
+     * @param item 项目编号
+     * @return 点后面的文法符号在 symbols 中的下标, 点在末尾时为 -1
+     */
+    int afterDot(int item) {
+        return afterDot[item];
+    }
+
+    //==================== 以下为构造相关代码 ==============================//
+
+    private static final int NO_SYMBOL = -1;
+
+    /**
+     * 项目集, 相等性由位图决定, 哈希值在构造时计算一次
+     */
+    private static final class ItemSet {
+        private final long[] words;
+        private final int hash;
+
+        private ItemSet(long[] words) {
+            this.words = words;
+            this.hash = Arrays.hashCode(words);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ItemSet other && other.hash == hash && Arrays.equals(other.words, words);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 对每个非终结符 X 求出点在以 X 为头的产生式开头的项目构成的闭包, 终结符对应空集
+     */
+    private void computeSymbolClosures() {
+        symbolClosures = new long[symbols.size()][];
+        for (int symbol = 0; symbol < symbols.size(); symbol++) {
+            final var closure = new long[wordCount];
+            // 深度优先地展开, 已加入闭包的项目不再展开
+            final var pending = new ArrayList<Integer>();
+            pending.add(symbol);
+            final var expanded = new boolean[symbols.size()];
+            while (!pending.isEmpty()) {
+                final var current = pending.remove(pending.size() - 1);
+                if (expanded[current]) {
+                    continue;
+                }
+                expanded[current] = true;
+                for (final var production : productionsByHead[current]) {
+                    final var item = itemBase[production];
+                    closure[item >>> 6] |= 1L << item;
+                    if (afterDot[item] != NO_SYMBOL) {
+                        pending.add(afterDot[item]);
+                    }
+                }
+            }
+            symbolClosures[symbol] = closure;
+        }
+    }
+
+    /**
+     * @param kernel 核
+     * @return 核的闭包
+     */
+    private ItemSet closure(long[] kernel) {
+        final var result = kernel.clone();
+        for (int word = 0; word < kernel.length; word++) {
+            for (var bits = kernel[word]; bits != 0; bits &= bits - 1) {
+                final var symbol = afterDot[word * 64 + Long.numberOfTrailingZeros(bits)];
+                if (symbol != NO_SYMBOL) {
+                    final var symbolClosure = symbolClosures[symbol];
+                    for (int i = 0; i < result.length; i++) {
+                        result[i] |= symbolClosure[i];
+                    }
+                }
+            }
+        }
+        return new ItemSet(result);
+    }
+
+    /**
+     * 一个后继项目集, 在并行展开时创建, 在顺序编号时得到状态编号
+     */
+    private static final class Successor {
+        private final ItemSet items;
+        private int index = -1;
+
+        private Successor(ItemSet items) {
+            this.items = items;
+        }
+    }
+
+    /**
+     * 以广度优先的顺序逐层构造所有状态及其转移
+     * <br>
+     * 每一层分两步: 先 (可能并行地) 对本层的每个状态求出所有后继项目集的核, 在以核为键的并发表中查找或登记后继项目集,
+     * 新项目集的闭包也在这一步求出; 再按本层状态的顺序, 每个状态按 symbols 的顺序为尚未编号的后继项目集依次编号, 作为下一层.
+     * 编号只在第二步中顺序进行, 因此与逐个状态广度优先地构造得到的编号完全相同, 与线程数无关.
+     * <br>
+     * 状态由核唯一确定: 两个核的闭包相同当且仅当两个核相同, 因为闭包中点不在开头的项目恰好就是核 (初始状态除外, 其核中只有增广项目).
+     */
+    private void construct(int parallelism) {
+        final var initKernel = new long[wordCount];
+        initKernel[0] |= 1L;
+        final var init = new Successor(closure(initKernel));
+        init.index = addState(init.items);
+        successors.put(new ItemSet(initKernel), init);
+
+        final var pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            var frontierStart = 0;
+            while (frontierStart < states.size()) {
+                final var frontierEnd = states.size();
+                final var expanded = new Successor[frontierEnd - frontierStart][];
+                final var first = frontierStart;
+                final IntConsumer expand = offset -> expanded[offset] = expand(first + offset);
+                if (pool != null) {
+                    pool.submit(() -> IntStream.range(0, expanded.length).parallel().forEach(expand)).join();
+                } else {
+                    IntStream.range(0, expanded.length).forEach(expand);
+                }
+
+                for (int state = frontierStart; state < frontierEnd; state++) {
+                    final var row = transitions.get(state);
+                    final var targets = expanded[state - frontierStart];
+                    for (int symbol = 0; symbol < targets.length; symbol++) {
+                        final var target = targets[symbol];
+                        if (target != null) {
+                            if (target.index < 0) {
+                                target.index = addState(target.items);
+                            }
+                            row[symbol] = target.index;
+                        }
+                    }
+                }
+                frontierStart = frontierEnd;
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 求出一个状态的所有后继项目集
+     *
+     * @param state 状态编号
+     * @return 以文法符号在 symbols 中的下标为下标的后继项目集, 没有转移的符号对应 null
+     */
+    private Successor[] expand(int state) {
+        // 扫描一遍项目集, 按点后符号分出各后继项目集的核
+        final var kernels = new long[symbols.size()][];
+        final var words = states.get(state).words;
+        for (int word = 0; word < words.length; word++) {
+            for (var bits = words[word]; bits != 0; bits &= bits - 1) {
+                final var item = word * 64 + Long.numberOfTrailingZeros(bits);
+                final var symbol = afterDot[item];
+                if (symbol == NO_SYMBOL) {
+                    continue;
+                }
+                if (kernels[symbol] == null) {
+                    kernels[symbol] = new long[wordCount];
+                }
+                final var next = item + 1;
+                kernels[symbol][next >>> 6] |= 1L << next;
+            }
+        }
+
+        final var result = new Successor[symbols.size()];
+        for (int symbol = 0; symbol < symbols.size(); symbol++) {
+            if (kernels[symbol] != null) {
+                final var kernel = new ItemSet(kernels[symbol]);
+                var successor = successors.get(kernel);
+                if (successor == null) {
+                    // 只有未见过的核才需要求闭包; 多个线程同时遇到同一个核时以先登记的为准
+                    final var created = new Successor(closure(kernels[symbol]));
+                    successor = successors.putIfAbsent(kernel, created);
+                    if (successor == null) {
+                        successor = created;
+                    }
+                }
+                result[symbol] = successor;
+            }
+        }
+        return result;
+    }
+
+    private int addState(ItemSet items) {
+        final var index = states.size();
+        states.add(items);
+        final var row = new int[symbols.size()];
+        Arrays.fill(row, -1);
+        transitions.add(row);
+        return index;
+    }
+
+    private final List<Production> productions;
+    private final List<Term> symbols;
+    private final Map<Term, Integer> symbolIndices = new HashMap<>();
+
+    private final int[][] productionsByHead;
+    private final int[] itemBase;
+    private final int[] itemProductions;
+    private final int[] itemDots;
+    private final int[] afterDot;
+    private final int wordCount;
+    private long[][] symbolClosures;
+
+    private final List<ItemSet> states = new ArrayList<>();
+    private final Map<ItemSet, Successor> successors = new ConcurrentHashMap<>();
+    private final List<int[]> transitions = new ArrayList<>();
+}
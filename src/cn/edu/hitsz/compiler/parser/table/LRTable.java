@@ -82,6 +82,19 @@ public class LRTable {
         this.nonTerminals = nonTerminals;
     }
 
+    // 以下访问器供 LRTableCache 序列化分析表使用
+    List<Status> getStatusInIndexOrder() {
+        return statusInIndexOrder;
+    }
+
+    List<TokenKind> getTerminals() {
+        return terminals;
+    }
+
+    List<NonTerminal> getNonTerminals() {
+        return nonTerminals;
+    }
+
     private final List<Status> statusInIndexOrder;
     private final List<TokenKind> terminals;
     private final List<NonTerminal> nonTerminals;
@@ -0,0 +1,223 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * LR 分析表的二进制缓存
+ * <br>
+ * TableLoader 每次启动都要逐行切分 CSV, 并以产生式的文本查找每个规约动作对应的产生式. 该类在第一次加载分析表后将其写为紧凑的二进制格式,
+ * 之后的启动把缓存整体读入内存后直接解码, 不做任何 CSV 或字符串解析.
+ * 缓存不做内存映射, 因为映射在被回收之前无法解除, 而缓存失效时 save 要覆盖同一个文件. 缓存中记录了语法文件, 码点文件与分析表文件的 CRC32,
+ * 三者中任何一个发生变化都会使缓存失效并重新生成. 格式如下 (均为大端序):
+ * <pre>
+ * int   magic ('LRTC')
+ * int   版本号
+ * long  校验和
+ * int   终结符个数 n, 之后 n 个 int 为各终结符的码点, 按分析表中列的顺序
+ * int   非终结符个数 m, 之后 m 个 int 为以该非终结符为头的某条产生式的编号
+ * int   状态个数 k, 之后依次为每个状态:
+ *       int 状态编号
+ *       int 动作个数 a, 之后 a 对 int: 终结符的列号, 编码后的动作 (同 CompiledLRTable)
+ *       int goto 个数 g, 之后 g 对 int: 非终结符的列号, 目标状态编号 (错误为 -1)
+ * </pre>
+ * 产生式通过编号从 {@link GrammarInfo#getProductionsInOrder()} 中取得, 终结符通过码点取得, 因此缓存中不含任何字符串.
+ */
+public final class LRTableCache {
+    private LRTableCache() {
+    }
+
+    /**
+     * 从缓存中加载分析表; 缓存不存在或已失效时从 CSV 加载, 并写入缓存
+     *
+     * @param tablePath CSV 格式的分析表路径
+     * @param cachePath 缓存路径
+     * @return LRTable
+     */
+    public static LRTable loadOrBuild(String tablePath, String cachePath) {
+        final var checksum = checksum(tablePath);
+        final var cached = load(cachePath, checksum);
+        if (cached != null) {
+            return cached;
+        }
+
+        final var table = new TableLoader().load(tablePath);
+        save(table, cachePath, checksum);
+        return table;
+    }
+
+    /**
+     * @param tablePath CSV 格式的分析表路径
+     * @return 语法文件, 码点文件与分析表文件的 CRC32
+     */
+    public static long checksum(String tablePath) {
+        final var crc = new CRC32();
+        for (final var path : List.of(FilePathConfig.GRAMMAR_PATH, FilePathConfig.CODING_MAP_PATH, tablePath)) {
+            crc.update(FileUtils.readBytes(path));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * 读取缓存
+     *
+     * @param cachePath 缓存路径
+     * @param checksum  期望的校验和
+     * @return 缓存中的分析表; 缓存不存在, 版本或校验和不符, 或内容不完整时返回 null
+     */
+    public static LRTable load(String cachePath, long checksum) {
+        if (!Files.exists(Paths.get(cachePath))) {
+            return null;
+        }
+
+        final var buffer = ByteBuffer.wrap(FileUtils.readBytes(cachePath));
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != checksum) {
+                return null;
+            }
+            return read(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param table     分析表
+     * @param cachePath 缓存路径
+     * @param checksum  校验和
+     */
+    public static void save(LRTable table, String cachePath, long checksum) {
+        final var terminals = table.getTerminals();
+        final var nonTerminals = table.getNonTerminals();
+        final var statuses = table.getStatusInIndexOrder();
+
+        final var terminalColumns = new HashMap<TokenKind, Integer>();
+        for (int column = 0; column < terminals.size(); column++) {
+            terminalColumns.put(terminals.get(column), column);
+        }
+        final var nonTerminalColumns = new HashMap<NonTerminal, Integer>();
+        for (int column = 0; column < nonTerminals.size(); column++) {
+            nonTerminalColumns.put(nonTerminals.get(column), column);
+        }
+
+        final var ints = new ArrayList<Integer>();
+        ints.add(terminals.size());
+        terminals.forEach(terminal -> ints.add(terminal.getCode()));
+        ints.add(nonTerminals.size());
+        for (final var nonTerminal : nonTerminals) {
+            ints.add(GrammarInfo.getProductionsInOrder().stream()
+                .filter(production -> production.head().equals(nonTerminal))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Non-terminal without production: " + nonTerminal))
+                .index());
+        }
+
+        ints.add(statuses.size());
+        for (final var status : statuses) {
+            ints.add(status.index());
+            ints.add(status.action().size());
+            status.action().forEach((terminal, action) -> {
+                ints.add(terminalColumns.get(terminal));
+                ints.add(CompiledLRTable.encode(action));
+            });
+            ints.add(status.goto_().size());
+            status.goto_().forEach((nonTerminal, target) -> {
+                ints.add(nonTerminalColumns.get(nonTerminal));
+                ints.add(target.index());
+            });
+        }
+
+        final var buffer = ByteBuffer.allocate(Integer.BYTES * 2 + Long.BYTES + Integer.BYTES * ints.size());
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(checksum);
+        ints.forEach(buffer::putInt);
+        FileUtils.writeBytes(cachePath, buffer.array());
+    }
+
+    private static LRTable read(ByteBuffer buffer) {
+        final var kindsByCode = new HashMap<Integer, TokenKind>();
+        for (final var kind : TokenKind.allAllowedTokenKinds().values()) {
+            kindsByCode.put(kind.getCode(), kind);
+        }
+
+        final var terminals = new ArrayList<TokenKind>();
+        final var terminalCount = buffer.getInt();
+        for (int i = 0; i < terminalCount; i++) {
+            final var kind = kindsByCode.get(buffer.getInt());
+            if (kind == null) {
+                return null;
+            }
+            terminals.add(kind);
+        }
+
+        final var productions = GrammarInfo.getProductionsInOrder();
+        final var nonTerminals = new ArrayList<NonTerminal>();
+        final var nonTerminalCount = buffer.getInt();
+        for (int i = 0; i < nonTerminalCount; i++) {
+            nonTerminals.add(productions.get(buffer.getInt() - 1).head());
+        }
+
+        // 先构造所有状态, 再填充动作, 因为移入与 goto 可能指向后面的状态
+        final var statusCount = buffer.getInt();
+        final var statusRecords = buffer.position();
+        final var statusInIndexOrder = new ArrayList<Status>(statusCount);
+        final var statuses = new HashMap<Integer, Status>();
+        for (int i = 0; i < statusCount; i++) {
+            final var status = Status.create(buffer.getInt());
+            statusInIndexOrder.add(status);
+            statuses.put(status.index(), status);
+            final var actionCount = buffer.getInt();
+            buffer.position(buffer.position() + Integer.BYTES * 2 * actionCount);
+            final var gotoCount = buffer.getInt();
+            buffer.position(buffer.position() + Integer.BYTES * 2 * gotoCount);
+        }
+
+        buffer.position(statusRecords);
+        for (final var status : statusInIndexOrder) {
+            buffer.getInt();
+            final var actionCount = buffer.getInt();
+            for (int i = 0; i < actionCount; i++) {
+                final var terminal = terminals.get(buffer.getInt());
+                final var action = buffer.getInt();
+                final var operand = CompiledLRTable.actionOperand(action);
+                final var kind = CompiledLRTable.actionKind(action);
+                if (kind == CompiledLRTable.SHIFT && !statuses.containsKey(operand)) {
+                    // 移入到不存在的状态, 缓存已损坏
+                    return null;
+                }
+                status.setAction(terminal, switch (kind) {
+                    case CompiledLRTable.SHIFT -> Action.shift(statuses.get(operand));
+                    case CompiledLRTable.REDUCE -> Action.reduce(productions.get(operand - 1));
+                    case CompiledLRTable.ACCEPT -> Action.accept();
+                    default -> Action.error();
+                });
+            }
+
+            final var gotoCount = buffer.getInt();
+            for (int i = 0; i < gotoCount; i++) {
+                final var nonTerminal = nonTerminals.get(buffer.getInt());
+                final var target = buffer.getInt();
+                if (target >= 0 && !statuses.containsKey(target)) {
+                    return null;
+                }
+                status.setGoto(nonTerminal, target < 0 ? Status.error() : statuses.get(target));
+            }
+        }
+
+        return new LRTable(statusInIndexOrder, terminals, nonTerminals);
+    }
+
+    private static final int MAGIC = 0x4C525443;
+    private static final int VERSION = 1;
+}
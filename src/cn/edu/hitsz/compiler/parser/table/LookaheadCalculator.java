@@ -0,0 +1,250 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在 LR(0) 自动机上以 DeRemer 与 Pennello 的关系图算法计算 LALR(1) 向前看符号集合
+ * <br>
+ * 对 LR(0) 自动机中每个非终结符转移 (p, A), 算法依次计算:
+ * <ul>
+ *     <li>DR(p, A): 状态 GOTO(p, A) 上可以直接移入的终结符; 若 GOTO(p, A) 含有完成的增广项目, 还包括 EOF</li>
+ *     <li>Read(p, A): 沿着 reads 关系 (GOTO(p, A) 上可空非终结符的转移) 求 DR 的并</li>
+ *     <li>Follow(p, A): 沿着 includes 关系 (B -> β A γ, γ 可空, p' 经 β 到达 p 时 (p, A) includes (p', B)) 求 Read 的并</li>
+ * </ul>
+ * 最后, 对状态 q 中的规约项目 A -> ω., 其向前看集合是所有满足 p 经 ω 到达 q 的 Follow(p, A) 之并 (lookback 关系).
+ * 两次求并都是在关系图上做一次类似 Tarjan 强连通分量的遍历, 同一强连通分量中的结点得到相同的集合, 总时间与关系的大小成线性.
+ * <br>
+ * 集合以 BitSet 表示, 其下标为终结符在 ItemSetAutomaton 的 symbols 中的下标.
+ *
+ * @see TableGenerator#setLALREnabled(boolean)
+ */
+final class LookaheadCalculator {
+    LookaheadCalculator(ItemSetAutomaton automaton) {
+        this.automaton = automaton;
+        this.eof = automaton.symbolIndex(TokenKind.eof());
+
+        computeNullable();
+        collectTransitions();
+        computeRelations();
+
+        final var read = digraph(directReads, reads);
+        final var initFollow = new ArrayList<BitSet>(read.size());
+        read.forEach(set -> initFollow.add((BitSet) set.clone()));
+        final var follow = digraph(initFollow, includes);
+
+        for (final var lookback : lookbacks) {
+            lookaheads.computeIfAbsent(key(lookback[0], lookback[1]), key -> new BitSet()).or(follow.get(lookback[2]));
+        }
+    }
+
+    /**
+     * @param state      状态编号
+     * @param production 产生式的下标, 该产生式的完成项目须在该状态中
+     * @return 在该状态按该产生式规约时的向前看符号集合, 下标为终结符在 symbols 中的下标
+     */
+    BitSet lookahead(int state, int production) {
+        return lookaheads.getOrDefault(key(state, production), new BitSet());
+    }
+
+    //==================== 以下为计算相关代码 ==============================//
+
+    private boolean isTerminal(int symbol) {
+        return automaton.symbol(symbol) instanceof TokenKind;
+    }
+
+    /**
+     * 以不动点迭代求出可空的非终结符
+     */
+    private void computeNullable() {
+        nullable = new boolean[automaton.symbolCount()];
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (int production = 0; production < automaton.productionCount(); production++) {
+                final var head = automaton.symbolIndex(automaton.production(production).head());
+                if (!nullable[head] && isNullable(automaton.production(production).body(), 0)) {
+                    nullable[head] = true;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private boolean isNullable(List<Term> body, int from) {
+        for (int i = from; i < body.size(); i++) {
+            if (!nullable[automaton.symbolIndex(body.get(i))]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 为 LR(0) 自动机中所有非终结符转移编号, 并求出各自的 DR
+     */
+    private void collectTransitions() {
+        final var acceptItem = automaton.item(0, automaton.production(0).body().size());
+        for (int state = 0; state < automaton.stateCount(); state++) {
+            for (int symbol = 0; symbol < automaton.symbolCount(); symbol++) {
+                final var target = automaton.transition(state, symbol);
+                if (target < 0 || isTerminal(symbol)) {
+                    continue;
+                }
+
+                transitionIndices.put(key(state, symbol), transitionStates.size());
+                transitionStates.add(state);
+                transitionSymbols.add(symbol);
+
+                final var directRead = new BitSet();
+                for (int next = 0; next < automaton.symbolCount(); next++) {
+                    if (isTerminal(next) && automaton.transition(target, next) >= 0) {
+                        directRead.set(next);
+                    }
+                }
+                if (automaton.contains(target, acceptItem)) {
+                    directRead.set(eof);
+                }
+                directReads.add(directRead);
+            }
+        }
+    }
+
+    /**
+     * 求出 reads, includes 与 lookback 关系
+     */
+    private void computeRelations() {
+        for (int transition = 0; transition < transitionStates.size(); transition++) {
+            reads.add(new ArrayList<>());
+            includes.add(new ArrayList<>());
+        }
+
+        for (int transition = 0; transition < transitionStates.size(); transition++) {
+            // reads: GOTO(p, A) 上可空非终结符的转移
+            final var target = automaton.transition(transitionStates.get(transition), transitionSymbols.get(transition));
+            for (int symbol = 0; symbol < automaton.symbolCount(); symbol++) {
+                if (nullable[symbol] && automaton.transition(target, symbol) >= 0) {
+                    reads.get(transition).add(transitionIndices.get(key(target, symbol)));
+                }
+            }
+
+            // 对以 B 为头的每条产生式, 从 p' 出发沿产生式体前进
+            final var from = transitionStates.get(transition);
+            for (final var production : automaton.productionsByHead(transitionSymbols.get(transition))) {
+                final var body = automaton.production(production).body();
+                var state = from;
+                for (int i = 0; i < body.size(); i++) {
+                    final var symbol = automaton.symbolIndex(body.get(i));
+                    // includes: B -> β A γ 且 γ 可空时, (p, A) includes (p', B)
+                    if (!isTerminal(symbol) && isNullable(body, i + 1)) {
+                        includes.get(transitionIndices.get(key(state, symbol))).add(transition);
+                    }
+                    state = automaton.transition(state, symbol);
+                }
+                // lookback: (q, B -> ω) lookback (p', B)
+                lookbacks.add(new int[]{state, production, transition});
+            }
+        }
+    }
+
+    /**
+     * DeRemer 与 Pennello 的 Digraph 算法: 对每个结点 x 求 F(x) = F'(x) ∪ ⋃{F(y) | x R+ y}
+     * <br>
+     * 为避免关系链很长时递归过深, 用显式的栈代替递归.
+     *
+     * @param initial  各结点的 F', 会被直接修改
+     * @param relation 各结点的后继
+     * @return 各结点的 F
+     */
+    private static List<BitSet> digraph(List<BitSet> initial, List<List<Integer>> relation) {
+        final var size = initial.size();
+        final var result = new ArrayList<>(initial);
+        // depth 为结点入栈时的栈深度, 之后更新为其能到达的栈中结点的最小深度; entered 保留入栈时的深度
+        final var depth = new int[size];
+        final var entered = new int[size];
+        final var stack = new int[size];
+        var stackSize = 0;
+        // 显式的调用栈: 结点及其下一个要访问的后继的位置
+        final var callNodes = new int[size];
+        final var callEdges = new int[size];
+
+        for (int start = 0; start < size; start++) {
+            if (depth[start] != 0) {
+                continue;
+            }
+
+            var callSize = 0;
+            stack[stackSize++] = start;
+            depth[start] = entered[start] = stackSize;
+            callNodes[callSize] = start;
+            callEdges[callSize++] = 0;
+
+            while (callSize > 0) {
+                final var node = callNodes[callSize - 1];
+                final var edges = relation.get(node);
+                final var edge = callEdges[callSize - 1];
+
+                if (edge < edges.size()) {
+                    callEdges[callSize - 1]++;
+                    final var next = edges.get(edge);
+                    if (depth[next] == 0) {
+                        // 进入后继, 返回后在下面的分支中合并
+                        stack[stackSize++] = next;
+                        depth[next] = entered[next] = stackSize;
+                        callNodes[callSize] = next;
+                        callEdges[callSize++] = 0;
+                        continue;
+                    }
+                    depth[node] = Math.min(depth[node], depth[next]);
+                    result.get(node).or(result.get(next));
+                    continue;
+                }
+
+                // 所有后继都已处理完毕, 若为强连通分量的根则将整个分量出栈
+                if (depth[node] == entered[node]) {
+                    while (true) {
+                        final var top = stack[--stackSize];
+                        depth[top] = Integer.MAX_VALUE;
+                        if (top == node) {
+                            break;
+                        }
+                        result.set(top, result.get(node));
+                    }
+                }
+
+                callSize--;
+                if (callSize > 0) {
+                    final var parent = callNodes[callSize - 1];
+                    depth[parent] = Math.min(depth[parent], depth[node]);
+                    result.get(parent).or(result.get(node));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static long key(int state, int other) {
+        return ((long) state << 32) | other;
+    }
+
+    private final ItemSetAutomaton automaton;
+    private final int eof;
+    private boolean[] nullable;
+
+    private final Map<Long, Integer> transitionIndices = new HashMap<>();
+    private final List<Integer> transitionStates = new ArrayList<>();
+    private final List<Integer> transitionSymbols = new ArrayList<>();
+    private final List<BitSet> directReads = new ArrayList<>();
+
+    private final List<List<Integer>> reads = new ArrayList<>();
+    private final List<List<Integer>> includes = new ArrayList<>();
+    private final List<int[]> lookbacks = new ArrayList<>();
+
+    private final Map<Long, BitSet> lookaheads = new HashMap<>();
+}
@@ -4,13 +4,14 @@ import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * 根据语法文件构造 LR 分析表.
  * <br>
  * 此文件为非必需的框架文件, 用于提升整个编译器处理流程的统一性以及为学生提供 SLR(1) 分析表生成程序的参考. 正常情况下你不需要了解该文件.
+ * <br>
+ * 默认构造 SLR(1) 分析表; 调用 {@link #setLALREnabled(boolean)} 后改为构造 LALR(1) 分析表,
+ * 两者的状态都是 LR(0) 自动机的状态, 只是规约动作的向前看符号集合不同.
  */
 public class TableGenerator {
     public TableGenerator() {
@@ -21,6 +22,43 @@ public class TableGenerator {
         if (productions.get(0).body().size() != 1) {
             throw new RuntimeException("The first production in grammar file must like S -> S'");
         }
+
+        // 按产生式头, 以及按产生式体中出现的符号分别索引产生式, 均保持产生式原本的顺序
+        for (final var production : productions) {
+            productionsByHead.computeIfAbsent(production.head(), key -> new ArrayList<>()).add(production);
+            for (final var term : new LinkedHashSet<>(production.body())) {
+                productionsByBodyTerm.computeIfAbsent(term, key -> new ArrayList<>()).add(production);
+            }
+        }
+    }
+
+    /**
+     * 设置是否构造 LALR(1) 分析表
+     * <br>
+     * SLR(1) 以 follow(A) 作为所有 A -> alpha . 项目的向前看集合, 对于某些文法会产生并不存在的冲突.
+     * LALR(1) 则由 {@link LookaheadCalculator} 在 LR(0) 自动机上为每个状态中的每个规约项目分别计算向前看集合,
+     * 能接受更多的文法, 而状态数仍与 LR(0) 自动机相同, 远少于规范 LR(1) 分析表.
+     *
+     * @param enabled 是否构造 LALR(1) 分析表, 默认为 false
+     */
+    public void setLALREnabled(boolean enabled) {
+        this.lalrEnabled = enabled;
+    }
+
+    /**
+     * 设置构造 LR(0) 规范项目集族时使用的线程数
+     * <br>
+     * 对于机器生成的大型文法, 项目集族的构造占了生成分析表的大部分时间. 线程数大于 1 时,
+     * {@link ItemSetAutomaton} 在 ForkJoinPool 上逐层并行地展开状态; 状态编号与单线程时完全相同, 因此生成的分析表不变.
+     *
+     * @param parallelism 线程数, 默认为 1
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new RuntimeException("Parallelism must be positive: " + parallelism);
+        }
+
+        this.parallelism = parallelism;
     }
 
     /**
@@ -41,7 +79,7 @@ public class TableGenerator {
         final var lines = new ArrayList<String>();
         for (final var status : allStatusInIndexOrder) {
             lines.add("%d: ".formatted(status.index()));
-            for (final var item : including.get(status)) {
+            for (final var item : getItems(status)) {
                 lines.add("    " + item);
             }
         }
@@ -59,12 +97,17 @@ public class TableGenerator {
     private final List<Production> productions;
     private final Set<TokenKind> terminals;
     private final Set<NonTerminal> nonTerminals;
+    private final Map<Term, List<Production>> productionsByHead = new HashMap<>();
+    private final Map<Term, List<Production>> productionsByBodyTerm = new HashMap<>();
 
     private final Map<Term, Set<TokenKind>> first = new HashMap<>();
     private final Map<Term, Set<TokenKind>> follow = new HashMap<>();
 
     private final Set<Term> visited = new HashSet<>();
 
+    private boolean lalrEnabled = false;
+    private int parallelism = 1;
+
     /**
      * 计算所有符号的 first 集合 <br>
      * 终结符的 first 就是它自身, 非终结符的 first 则递归计算
@@ -94,7 +137,7 @@ public class TableGenerator {
         }
 
         final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
+        for (final var production : productionsByHead.getOrDefault(nonTerminal, List.of())) {
             if (nonTerminal == production.head()) {
                 // 在文法中寻找以该非终结符为头的产生式
                 final var firstSymbol = production.body().get(0);
@@ -142,7 +185,8 @@ public class TableGenerator {
         }
 
         final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
+        // 只需要查看产生式体中出现了该非终结符的产生式
+        for (final var production : productionsByBodyTerm.getOrDefault(nonTerminal, List.of())) {
             final var body = production.body();
 
             // 对该非终结符在每条产生式体中的可能出现, 我们都要将紧跟在该出现后面的项的 first 加入其 follow 集合
@@ -205,17 +249,6 @@ public class TableGenerator {
             }
         }
 
-        /**
-         * @return 获得当前项目的后继项; 若点的位置在末尾则返回空
-         */
-        public Optional<Item> getNextItem() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(new Item(production, dot + 1));
-            }
-        }
-
         @Override
         public String toString() {
             final var builder = new StringBuilder();
@@ -239,132 +272,46 @@ public class TableGenerator {
         }
     }
 
-    private final Map<Set<Item>, Status> belongTo = new HashMap<>();
-    private final Map<Status, Set<Item>> including = new HashMap<>();
+    private ItemSetAutomaton automaton;
     private final List<Status> allStatusInIndexOrder = new ArrayList<>();
 
     /**
-     * 构造出所有状态并维护状态与项集之间的对应关系
+     * 构造出所有状态及状态之间的转移
+     * <br>
+     * 项目集族由 {@link ItemSetAutomaton} 以整数编码的项目与位图表示的项目集构造, 转移只计算一次, 可以使用多个线程.
+     * 文法符号按先非终结符后终结符的顺序尝试, 状态按广度优先的发现顺序编号.
      */
     private void constructDFA() {
-        final var argumentProduction = productions.get(0);
-        final var initItem = new Item(argumentProduction, 0);
-        final var collections = constructCanonicalLRCollection(initItem);
-
-        for (int idx = 0; idx < collections.size(); idx++) {
-            final var status = Status.create(idx);
-            allStatusInIndexOrder.add(status);
-
-            final var items = collections.get(idx);
-            including.put(status, items);
-            belongTo.put(items, status);
-        }
-    }
-
-    /**
-     * @param head 头部符号
-     * @return 返回一个流, 其中的元素都是以 head 为头的产生式
-     */
-    private Stream<Production> getProductionsByHead(Term head) {
-        return productions.stream().filter(production -> production.head().equals(head));
-    }
-
-    /**
-     * 构造项集 {@code sourceItem} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
-     *
-     * @param sourceItem 项集 I
-     * @return 闭包
-     */
-    private Set<Item> constructClosure(Set<Item> sourceItem) {
-        // 采用 BFS 的方法来避免每次都检测集合的更改
-        final var result = new LinkedHashSet<>(sourceItem);
-        // 已经找到, 但是还未完全探索其能展开的项的项
-        // 类似于 BFS 的队列或者是 mark-and-sweep GC 算法里的灰色列表
-        final var unexpanded = new ArrayDeque<>(sourceItem);
-
-        while (!unexpanded.isEmpty()) {
-            final var top = unexpanded.pollFirst();
-            // 获得当前项中点后面的符号
-            top.getAfterDot().ifPresent(afterDot ->
-                // 随后查找以该符号作为头部的产生式
-                getProductionsByHead(afterDot)
-                    // 构造点在对应产生式开头的新项
-                    .map(production -> new Item(production, 0))
-                    // 对于不在 result 中的新项
-                    .filter(item -> !result.contains(item))
-                    // 加入队列并加入结果中
-                    .peek(unexpanded::add)
-                    .forEach(result::add));
-        }
-
-        return result;
-    }
-
-    /**
-     * 相当于理论课中的 GO(I, X) 函数 (转移函数)
-     *
-     * @param items 当前项集 I
-     * @param term  文法符号 X
-     * @return I 关于 X 的后继项目集
-     */
-    private Set<Item> constructGoto(Set<Item> items, Term term) {
-        final var kernelForGoto = items.stream()
-            // 先筛选出 I 中所有点后面是 term 的项
-            .filter(item -> item.getAfterDot().map(term::equals).orElse(false))
-            // 然后分别求出每一个项的后继项
-            // 这个项集就是后继项目集的核
-            .map(Item::getNextItem).flatMap(Optional::stream)
-            .collect(Collectors.toSet());
-
-        // 随后从后继项目集的核中构造闭包即可得到后继项目集
-        return constructClosure(kernelForGoto);
-    }
-
-    /**
-     * 构造 LR(0) 规范项目集族
-     *
-     * @param initItem 起始项目 S -> . S'
-     * @return 规范项目集族
-     */
-    private List<Set<Item>> constructCanonicalLRCollection(Item initItem) {
         // 先收集所有的文法符号备用
         final var terms = new LinkedHashSet<Term>();
         terms.addAll(nonTerminals);
         terms.addAll(terminals);
 
-        // 构造初始项目集族
-        final var initClosure = constructClosure(Set.of(initItem));
-
-        // 同样以 BFS 形式搜索
-        final var result = new LinkedHashSet<>(Set.of(initClosure));
-        final var unexpanded = new ArrayDeque<>(Set.of(initClosure));
-
-        while (!unexpanded.isEmpty()) {
-            final var items = unexpanded.pollFirst();
-
-            // 对于每个未被探索的集族
-            for (final var term : terms) {
-                // 尝试对每一个文法符号都求一个后继项目集
-                final var to = constructGoto(items, term);
-                // 如果还没被加入到 result 中
-                if (!to.isEmpty() && !result.contains(to)) {
-                    // 就加入 result 和待探索列表中
-                    result.add(to);
-                    unexpanded.addLast(to);
-                }
-            }
+        automaton = new ItemSetAutomaton(productions, new ArrayList<>(terms), parallelism);
+        for (int idx = 0; idx < automaton.stateCount(); idx++) {
+            allStatusInIndexOrder.add(Status.create(idx));
         }
+    }
 
-        return new ArrayList<>(result);
+    /**
+     * @param status 状态
+     * @return 该状态的项目集
+     */
+    private List<Item> getItems(Status status) {
+        return Arrays.stream(automaton.items(status.index()))
+            .mapToObj(item -> new Item(automaton.itemProduction(item), automaton.itemDot(item)))
+            .toList();
     }
 
     /**
      * 构造 LR 分析表 (填充各个 status 中的 action 与 goto)
      */
     private void genTable() {
+        final var lookaheads = lalrEnabled ? new LookaheadCalculator(automaton) : null;
+
         // 依索引顺序对每个状态的每个项目
         for (final var status : allStatusInIndexOrder) {
-            for (final var item : including.get(status)) {
+            for (final var item : getItems(status)) {
                 final var afterDotOpt = item.getAfterDot();
 
                 // 根据项目的点的位置和点后面跟着的文法符号进行分类
@@ -377,16 +324,22 @@ public class TableGenerator {
                     } else {
                         // A -> alpha .
                         // 如果项目代表某个产生式的末尾, 那么再遇到对于任何位于 follow(A) 内的文法符号都应该规约 A
+                        // LALR(1) 模式下则改为该状态中该项目的向前看集合
                         final var production = item.production();
                         final var head = production.head();
-                        for (final var a : follow.get(head)) {
-                            status.setAction(a, Action.reduce(production));
+                        if (lookaheads != null) {
+                            final var lookahead = lookaheads.lookahead(status.index(), production.index() - 1);
+                            lookahead.stream().forEach(a -> status.setAction((TokenKind) automaton.symbol(a), Action.reduce(production)));
+                        } else {
+                            for (final var a : follow.get(head)) {
+                                status.setAction(a, Action.reduce(production));
+                            }
                         }
                     }
 
                 } else {
                     final var symbol = afterDotOpt.get();
-                    final var next = belongTo.get(constructGoto(including.get(status), symbol));
+                    final var next = allStatusInIndexOrder.get(automaton.transition(status.index(), automaton.symbolIndex(symbol)));
 
                     if (symbol instanceof TokenKind tokenKind) {
                         // A -> alpha . a beta
@@ -5,8 +5,8 @@ import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 符号表
@@ -14,10 +14,13 @@ import java.util.Map;
  * 由于源语言比较简易, 加之 Java 中具有非常好用的通用数据结构类型, 本项目其实并不一定需要一个集中的 "符号表" 来存储源语言中的
  * <b>所有符号的所有信息</b>. 但为了切合理论课程教学, 提高实验实践技能的通用性, 我们按照一般编译器项目中符号表的设计设计了该符号表.
  * 其在代码中的作用可能并不明显, 但我们希望同学们可以借此体验符号表的设计思想.
+ * <br>
+ * 并行词法分析时会有多个线程同时插入符号, 因此符号表以 ConcurrentHashMap 存储, 新增条目的操作都是原子的.
+ * 每个实例的条目相互独立, 增量词法分析删除的符号不会影响其他实例.
  */
 public class SymbolTable {
 
-    private static final Map<String, SymbolTableEntry> symbolTable = new HashMap<>();
+    private final Map<String, SymbolTableEntry> symbolTable = new ConcurrentHashMap<>();
     /**
      * 获取符号表中已有的条目
      *
@@ -40,12 +43,33 @@ public class SymbolTable {
      * @throws RuntimeException 该符号已在表中存在
      */
     public SymbolTableEntry add(String text) {
-        if(has(text)) {
+        final var entry = new SymbolTableEntry(text);
+        if (symbolTable.putIfAbsent(text, entry) != null) {
             throw new RuntimeException("The symbol is already in the table");
-        } else{
-            symbolTable.put(text, new SymbolTableEntry(text));
         }
-        return symbolTable.get(text);
+        return entry;
+    }
+
+    /**
+     * 获取符号表中已有的条目, 若不存在则新增, 可以被多个线程同时调用
+     *
+     * @param text 符号的文本表示
+     * @return 该符号在符号表中的条目
+     */
+    public SymbolTableEntry getOrAdd(String text) {
+        return symbolTable.computeIfAbsent(text, SymbolTableEntry::new);
+    }
+
+    /**
+     * 从符号表中删除条目, 用于增量词法分析时某个标识符已不再出现在源程序中的情况
+     *
+     * @param text 待删除符号的文本表示
+     * @throws RuntimeException 该符号在表中不存在
+     */
+    public void remove(String text) {
+        if (symbolTable.remove(text) == null) {
+            throw new RuntimeException("The symbol is not in the table");
+        }
     }
 
     /**
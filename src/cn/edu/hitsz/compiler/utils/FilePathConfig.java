@@ -43,6 +43,11 @@ public final class FilePathConfig {
      */
     public static final String PARSER_PATH = "data/out/parser_list.txt";
 
+    /**
+     * 二进制的规约日志, 由 ReduceLogWriter 写出
+     */
+    public static final String REDUCE_LOG_PATH = "data/out/parser_list.bin";
+
     /**
      * 语义分析后的符号表
      */
@@ -63,6 +68,11 @@ public final class FilePathConfig {
      */
     public static final String ASSEMBLY_LANGUAGE_PATH = "data/out/assembly_language.asm";
 
+    /**
+     * 由 LR 分析表生成的二进制缓存
+     */
+    public static final String LR1_TABLE_CACHE_PATH = isExtra ? "data/out/LR1_table_extra.bin" : "data/out/LR1_table.bin";
+
     private FilePathConfig() {
     }
 
@@ -1,10 +1,15 @@
 package cn.edu.hitsz.compiler.utils;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 
@@ -36,6 +41,38 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * 将整个文件读入堆上的字节数组
+     * <br>
+     * 与 {@link #mapFile} 不同, 读取之后不再持有文件, 之后可以安全地覆盖或删除它
+     *
+     * @param path 文件路径
+     * @return 文件内容
+     */
+    public static byte[] readBytes(String path) {
+        try {
+            return Files.readAllBytes(Paths.get(path));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 以只读方式将整个文件映射到内存中, 不将文件内容复制到堆上
+     * <br>
+     * 单个 {@code MappedByteBuffer} 最多只能映射 2GB 的内容
+     *
+     * @param path 文件路径
+     * @return 映射了整个文件内容的只读缓冲区
+     */
+    public static MappedByteBuffer mapFile(String path) {
+        try (final var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
     /**
      * 将内容写入指定文件
      *
@@ -46,6 +83,20 @@ public final class FileUtils {
         writeLines(path, List.of(content));
     }
 
+    /**
+     * 将二进制内容写入指定文件
+     *
+     * @param path  要写入的文件路径
+     * @param bytes 要写入的内容
+     */
+    public static void writeBytes(String path, byte[] bytes) {
+        try {
+            Files.write(Paths.get(path), bytes);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
     public static void writeLines(String path, List<String> lines) {
         try {
             Files.write(Paths.get(path), lines, StandardCharsets.UTF_8);
@@ -54,6 +105,36 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * 打开文件用于逐行写入, 适合边生成边输出的内容. 使用完毕后需要关闭
+     * <br>
+     * 返回的 PrintWriter 不抛出 IOException, 需要时以 {@code checkError} 检查
+     *
+     * @param path 要写入的文件路径
+     * @return 带缓冲的 UTF-8 writer
+     */
+    public static PrintWriter openLineWriter(String path) {
+        try {
+            return new PrintWriter(Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
+    /**
+     * 打开文件用于写入二进制内容, 已存在时会被覆盖. 返回的流不带缓冲, 使用完毕后需要关闭
+     *
+     * @param path 要写入的文件路径
+     * @return 文件输出流
+     */
+    public static OutputStream openOutputStream(String path) {
+        try {
+            return Files.newOutputStream(Paths.get(path));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
     /**
      * 创建空文件
      *
@@ -20,45 +20,69 @@ public class IREmulator {
 
     public Optional<Integer> execute() {
         for (final var instruction : instructions) {
-            switch (instruction.getKind()) {
-                case MOV -> {
-                    final var from = eval(instruction.getFrom());
-                    environment.put(instruction.getResult(), from);
-                }
-
-                case ADD -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs + rhs);
-                }
-
-                case SUB -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs - rhs);
-                }
-
-                case MUL -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs * rhs);
-                }
-
-                case POW -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), (int) Math.pow(lhs, rhs));
-                }
-
-                case RET -> this.returnValue = eval(instruction.getReturnValue());
-
-                default -> throw new RuntimeException("Unknown instruction kind: " + instruction.getKind());
-            }
+            execute(instruction);
         }
 
         return Optional.ofNullable(this.returnValue);
     }
 
+    /**
+     * 执行单条指令, 用于在逐语句生成 IR 时边生成边执行, 不必保留整个程序的 IR.
+     * 之后调用 {@link #execute()} (可以以空的指令列表 load) 即得到返回值
+     *
+     * @param instruction 指令
+     */
+    public void execute(Instruction instruction) {
+        switch (instruction.getKind()) {
+            case MOV -> {
+                final var from = eval(instruction.getFrom());
+                environment.put(instruction.getResult(), from);
+            }
+
+            case ADD -> {
+                final var lhs = eval(instruction.getLHS());
+                final var rhs = eval(instruction.getRHS());
+                environment.put(instruction.getResult(), lhs + rhs);
+            }
+
+            case SUB -> {
+                final var lhs = eval(instruction.getLHS());
+                final var rhs = eval(instruction.getRHS());
+                environment.put(instruction.getResult(), lhs - rhs);
+            }
+
+            case MUL -> {
+                final var lhs = eval(instruction.getLHS());
+                final var rhs = eval(instruction.getRHS());
+                environment.put(instruction.getResult(), lhs * rhs);
+            }
+
+            case POW -> {
+                final var lhs = eval(instruction.getLHS());
+                final var rhs = eval(instruction.getRHS());
+                environment.put(instruction.getResult(), (int) Math.pow(lhs, rhs));
+            }
+
+            case RET -> this.returnValue = eval(instruction.getReturnValue());
+
+            default -> throw new RuntimeException("Unknown instruction kind: " + instruction.getKind());
+        }
+    }
+
+    /**
+     * 丢弃这些指令写入的临时变量. IRGenerator 生成的临时变量只在其所在的语句内使用,
+     * 因此逐语句执行时可以在每条语句之后丢弃它们, 使环境的大小只与源程序中的变量数有关
+     *
+     * @param instructions 一条语句的指令
+     */
+    public void discardTemps(List<Instruction> instructions) {
+        for (final var instruction : instructions) {
+            if (!instruction.getKind().isReturn() && instruction.getResult().isTemp()) {
+                environment.remove(instruction.getResult());
+            }
+        }
+    }
+
     public Integer eval(IRValue value) {
         if (value instanceof IRImmediate immediate) {
             return immediate.getValue();